@@ -2,6 +2,7 @@ package com.botamochi.easyannouncement.client;
 
 import com.botamochi.easyannouncement.Easyannouncement;
 import com.botamochi.easyannouncement.data.AnnouncementEntry;
+import com.botamochi.easyannouncement.network.AnnounceCodec;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -55,92 +56,17 @@ public class AnnounceReceiveFromServer {
 					lastCleanupTime = currentTime;
 				}
 
-				final BlockPos pos = buf.readBlockPos();
-				long[] platformIds = buf.readLongArray();
-				final List<Long> selectedPlatforms = new ArrayList<>();
-				for (long platformId : platformIds) {
-					selectedPlatforms.add(platformId);
-				}
-				
-				// Check buffer readability to detect format issues
-				int remainingBytes = buf.readableBytes();
-				
-				List<AnnouncementEntry> announcementEntries = new ArrayList<>();
-				String destinationLocal = "unknown";
-				String routeTypeLocal = "unknown";
-                String hhLocal = "00";
-                String mmLocal = "00";
-				// Local chosen identifiers for this packet
-				long chosenPlatformIdLocal = -1L;
-				long chosenRouteIdLocal = -1L;
-				int chosenCurrentStationIndexLocal = -1;
-				
-				// Try new format first
-				if (remainingBytes >= 4) { // At least an int for entry count
-					int entryCount = buf.readInt();
-					
-					if (entryCount >= 0 && entryCount <= 100) { // Sanity check
-						// Read announcement entries
-						for (int i = 0; i < entryCount; i++) {
-							if (buf.readableBytes() <= 0) { // No more data
-								System.err.println("Not enough buffer for entry " + i);
-								break;
-							}
-							String jsonName = buf.readString();
-							if (buf.readableBytes() <= 0) { // Not enough for delay int (conservative)
-								System.err.println("Not enough buffer for delay for entry " + i);
-								break;
-							}
-							int delaySeconds = buf.readInt();
-							announcementEntries.add(new AnnouncementEntry(jsonName, delaySeconds));
-						}
-						
-						// Read destination and route type if buffer has enough data
-						if (buf.readableBytes() > 0) {
-							destinationLocal = buf.readString();
-						}
-						if (buf.readableBytes() > 0) {
-							routeTypeLocal = buf.readString();
-						}
-                        if (buf.readableBytes() > 0) {
-                            hhLocal = buf.readString();
-                        }
-                        if (buf.readableBytes() > 0) {
-                            mmLocal = buf.readString();
-                        }
-                        						// New chosen identifiers (optional)
-						if (buf.readableBytes() >= Long.BYTES) {
-							chosenPlatformIdLocal = buf.readLong();
-						}
-						if (buf.readableBytes() >= Long.BYTES) {
-							chosenRouteIdLocal = buf.readLong();
-						}
-						if (buf.readableBytes() >= Integer.BYTES) {
-							chosenCurrentStationIndexLocal = buf.readInt();
-						}
-					} else {
-						System.err.println("Invalid entry count: " + entryCount + ", trying legacy format (not resetting buffer)");
-						
-						// Legacy format: selectedJson, destination, routeType  
-						// Don't reset buffer, just continue reading from current position
-						if (buf.readableBytes() > 0) {
-							String selectedJson = buf.readString();
-							if (!selectedJson.trim().isEmpty()) {
-								announcementEntries.add(new AnnouncementEntry(selectedJson, 0));
-							}
-						}
-						if (buf.readableBytes() > 0) {
-							destinationLocal = buf.readString();
-						}
-						if (buf.readableBytes() > 0) {
-							routeTypeLocal = buf.readString();
-						}
-                        						// Legacy: no chosen identifiers
-						chosenPlatformIdLocal = -1L;
-						chosenRouteIdLocal = -1L;
-						chosenCurrentStationIndexLocal = -1;
-					}
-				}
+				final AnnounceCodec.Start start = AnnounceCodec.readStart(buf);
+				final BlockPos pos = start.pos;
+				final List<Long> selectedPlatforms = start.platformIds;
+				List<AnnouncementEntry> announcementEntries = start.entries;
+				String destinationLocal = start.destination;
+				String routeTypeLocal = start.routeType;
+				String hhLocal = start.hh;
+				String mmLocal = start.mm;
+				long chosenPlatformIdLocal = start.chosenPlatformId;
+				long chosenRouteIdLocal = start.chosenRouteId;
+				int chosenCurrentStationIndexLocal = start.chosenCurrentStationIndex;
 				
 				// Build immutable context snapshot for this announcement
                 				String routeTypeResolved = routeTypeLocal;
@@ -618,7 +544,7 @@ public class AnnounceReceiveFromServer {
                 client.execute(() -> {
                     try {
                         PacketByteBuf buf = PacketByteBufs.create();
-                        buf.writeBlockPos(finalPos);
+                        AnnounceCodec.writePos(buf, finalPos);
                         ClientPlayNetworking.send(ANNOUNCEMENT_FINISHED_ID, buf);
                     } catch (Exception e) {
                         System.err.println("[EasyAnnouncement] Failed to send announcement finished notification: " + e.getMessage());
@@ -1,142 +1,98 @@
 package com.botamochi.easyannouncement.client;
 
-import com.botamochi.easyannouncement.data.AnnouncementEntry;
+import com.botamochi.easyannouncement.Easyannouncement;
+import com.botamochi.easyannouncement.network.AnnounceCodec;
+import com.botamochi.easyannouncement.network.AnnounceConfigSync;
+import com.botamochi.easyannouncement.network.AnnounceProtocol;
 import com.botamochi.easyannouncement.network.AnnounceSendToClient;
 import com.botamochi.easyannouncement.tile.AnnounceTile;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class ClientNetworkHandler {
 	public static final Identifier ID = AnnounceSendToClient.ID;
+	// 差分同期: タイルごとに最後に適用したリビジョンと、完全な状態を要求中の位置
+	private static final Long2IntOpenHashMap REVISIONS = new Long2IntOpenHashMap();
+	private static final LongOpenHashSet REQUESTED = new LongOpenHashSet();
+
+	static {
+		REVISIONS.defaultReturnValue(-1);
+	}
 
 	public static void register() {
-		ClientPlayNetworking.registerGlobalReceiver(ID, (client, handler, buf, responseSender) -> {
-			BlockPos pos = buf.readBlockPos();
-			int seconds = buf.readInt();
-			long[] platformIds = buf.readLongArray();
-			List<Long> selectedPlatforms = new ArrayList<>();
-			for (long platformId : platformIds) {
-				selectedPlatforms.add(platformId);
-			}
-			
-			// Read announcement entries
-			List<AnnouncementEntry> announcementEntries = new ArrayList<>();
-			float volume = 2.0F;
-			int range = 64;
-			String attenuationType = "LINEAR";
-			boolean boundingBoxEnabled = false;
-			int startX = -100, startY = -64, startZ = -100, endX = 100, endY = 320, endZ = 100;
-			
-			// Backward-compatible parsing (same as server-side)
-			if (buf.readableBytes() >= 4) {
-				int entryCount = buf.readInt();
-				if (entryCount >= 0 && entryCount <= 100) {
-					for (int i = 0; i < entryCount; i++) {
-						if (buf.readableBytes() < 4) break;
-						String jsonName = buf.readString();
-						if (buf.readableBytes() < 4) break;
-						int delaySeconds = buf.readInt();
-						announcementEntries.add(new AnnouncementEntry(jsonName, delaySeconds));
-					}
-				} else {
-					announcementEntries.clear();
-				}
-			}
-			
-			// Sound config (optional in older clients)
-			if (buf.readableBytes() >= 4) {
-				volume = buf.readFloat();
-			}
-			if (buf.readableBytes() >= 4) {
-				range = buf.readInt();
-			}
-			if (buf.readableBytes() >= 4) {
-				attenuationType = buf.readString();
-			}
-			
-			// Bounding box enabled (optional in older clients)
-			if (buf.readableBytes() >= 1) {
-				boundingBoxEnabled = buf.readBoolean();
-			}
-			
-			// XYZ coordinates (optional in older clients)
-			if (buf.readableBytes() >= 24) { // 6 ints
-				startX = buf.readInt();
-				startY = buf.readInt();
-				startZ = buf.readInt();
-				endX = buf.readInt();
-				endY = buf.readInt();
-				endZ = buf.readInt();
-			}
-			
-			// Trigger mode (optional in older clients)
-			String triggerMode = "EXACT";
-			if (buf.readableBytes() >= 4) {
-				triggerMode = buf.readString(32767);
-			}
-			
-			// Repeat mode (optional in older clients)
-			boolean repeatMode = false;
-			if (buf.readableBytes() >= 1) {
-				repeatMode = buf.readBoolean();
+		ClientPlayNetworking.registerGlobalReceiver(AnnounceProtocol.HELLO_ID, (client, handler, buf, responseSender) -> {
+			int serverVersion = buf.readVarInt();
+			if (serverVersion != AnnounceCodec.VERSION) {
+				Easyannouncement.LOGGER.warn("[EasyAnnouncement] Server uses protocol v{}, client uses v{}", serverVersion, AnnounceCodec.VERSION);
 			}
-			
-			// Exclude players above (optional in older clients)
-			boolean excludePlayersAbove = false;
-			if (buf.readableBytes() >= 1) {
-				excludePlayersAbove = buf.readBoolean();
-			}
-
-			final float volumeFinal = volume;
-			final int rangeFinal = range;
-			final String attenuationTypeFinal = attenuationType;
-			final boolean boundingBoxEnabledFinal = boundingBoxEnabled;
-			final int startXFinal = startX;
-			final int startYFinal = startY;
-			final int startZFinal = startZ;
-			final int endXFinal = endX;
-			final int endYFinal = endY;
-			final int endZFinal = endZ;
-			final String triggerModeFinal = triggerMode;
-			final boolean repeatModeFinal = repeatMode;
-			final boolean excludePlayersAboveFinal = excludePlayersAbove;
+			// 自分のバージョンを返す (不一致ならサーバー側で切断される)
+			responseSender.sendPacket(AnnounceProtocol.HELLO_ID, AnnounceProtocol.createHello());
+		});
 
-			// Removed normal log: Received packet details
+		ClientPlayNetworking.registerGlobalReceiver(ID, (client, handler, buf, responseSender) -> {
+			AnnounceCodec.Update update = AnnounceCodec.readConfig(buf);
 
 			client.execute(() -> {
 				ClientPlayerEntity player = client.player;
-				boolean tileUpdated = false;
-				if (player != null && player.world.getBlockEntity(pos) instanceof AnnounceTile announceTile) {
-					announceTile.setSeconds(seconds);
-					announceTile.setSelectedPlatformIds(selectedPlatforms);
-					announceTile.setAnnouncementEntries(announcementEntries);
-					announceTile.setSoundVolume(volumeFinal);
-					announceTile.setSoundRange(rangeFinal);
-					announceTile.setAttenuationType(attenuationTypeFinal);
-					announceTile.setBoundingBoxEnabled(boundingBoxEnabledFinal);
-					announceTile.setStartX(startXFinal);
-					announceTile.setStartY(startYFinal);
-					announceTile.setStartZ(startZFinal);
-					announceTile.setEndX(endXFinal);
-					announceTile.setEndY(endYFinal);
-					announceTile.setEndZ(endZFinal);
-					announceTile.setTriggerMode(triggerModeFinal);
-					announceTile.setRepeatMode(repeatModeFinal);
-					announceTile.setExcludePlayersAbove(excludePlayersAboveFinal);
-					tileUpdated = true;
+				if (player != null && player.world.getBlockEntity(update.pos) instanceof AnnounceTile announceTile) {
+					announceTile.setTemplatePreview(update.template);
+					update.applyTo(announceTile);
 				}
+				// 完全な状態を受け取ったので、以降の差分はこのリビジョンから続く
+				REQUESTED.remove(update.pos.asLong());
+				REVISIONS.put(update.pos.asLong(), update.revision);
 
 				// Always update GUI if screen is open, even if tile entity isn't loaded yet
 				if (client.currentScreen instanceof MainScreen mainScreen) {
-					mainScreen.updateData(seconds, selectedPlatforms, announcementEntries);
+					mainScreen.updateData(update.config.seconds, update.config.getPlatformIdList(), update.config.entries);
 				}
 			});
 		});
+
+		ClientPlayNetworking.registerGlobalReceiver(AnnounceConfigSync.DELTA_ID, (client, handler, buf, responseSender) -> {
+			AnnounceCodec.Delta delta = AnnounceCodec.readDelta(buf);
+			client.execute(() -> applyDelta(client, delta));
+		});
+
+		ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(() -> {
+			REVISIONS.clear();
+			REQUESTED.clear();
+		}));
+	}
+
+	private static void applyDelta(MinecraftClient client, AnnounceCodec.Delta delta) {
+		ClientPlayerEntity player = client.player;
+		if (player == null || !(player.world.getBlockEntity(delta.pos) instanceof AnnounceTile announceTile)) return;
+		delta.applyTo(announceTile);
+
+		long key = delta.pos.asLong();
+		int known = REVISIONS.get(key);
+		if (known >= 0 && delta.revision == known + 1) {
+			REVISIONS.put(key, delta.revision);
+		} else {
+			// 取りこぼした差分があるか、まだ完全な状態を受け取っていない
+			REVISIONS.remove(key);
+			requestFullSnapshot(delta.pos);
+		}
+
+		if ((delta.fields & (AnnounceConfigSync.FIELD_SECONDS | AnnounceConfigSync.FIELD_PLATFORMS | AnnounceConfigSync.FIELD_ENTRIES | AnnounceConfigSync.FIELD_TEMPLATE)) != 0
+				&& client.currentScreen instanceof MainScreen mainScreen) {
+			mainScreen.updateData(announceTile.getSeconds(), announceTile.getSelectedPlatformIds(), announceTile.getAnnouncementEntries());
+		}
+	}
+
+	private static void requestFullSnapshot(BlockPos pos) {
+		if (!REQUESTED.add(pos.asLong())) return;
+		PacketByteBuf buf = PacketByteBufs.create();
+		AnnounceCodec.writePos(buf, pos);
+		ClientPlayNetworking.send(AnnounceConfigSync.FULL_REQUEST_ID, buf);
 	}
 }
\ No newline at end of file
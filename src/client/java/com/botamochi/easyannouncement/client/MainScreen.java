@@ -1,6 +1,8 @@
 package com.botamochi.easyannouncement.client;
 
+import com.botamochi.easyannouncement.data.AnnounceConfig;
 import com.botamochi.easyannouncement.data.AnnouncementEntry;
+import com.botamochi.easyannouncement.network.AnnounceCodec;
 import com.botamochi.easyannouncement.network.AnnounceSendToClient;
 import com.botamochi.easyannouncement.screen.MainScreenHandler;
 import com.botamochi.easyannouncement.tile.AnnounceTile;
@@ -192,6 +194,19 @@ public class MainScreen extends Screen implements ScreenHandlerProvider<MainScre
                 this.addDrawableChild(excludePlayersAboveCheckbox);
             }
 
+            // Trigger Mode Button (EXACT <-> CROSSING)
+            ButtonWidget triggerModeButton = new ButtonWidget(x, yStart + 10 * yOffset - scrollOffset, buttonWidth, buttonHeight,
+                getTriggerModeText(announceTile.getTriggerMode()), button -> {
+                    String nextMode = AnnounceTile.TRIGGER_MODE_CROSSING.equals(announceTile.getTriggerMode())
+                        ? AnnounceTile.TRIGGER_MODE_EXACT
+                        : AnnounceTile.TRIGGER_MODE_CROSSING;
+                    announceTile.applyConfig(announceTile.getConfig().withTriggerMode(nextMode));
+                    button.setMessage(getTriggerModeText(nextMode));
+                });
+            if (isElementVisible(yStart + 10 * yOffset - scrollOffset, buttonHeight)) {
+                this.addDrawableChild(triggerModeButton);
+            }
+
             // XYZ Coordinate Input Fields
             int fieldWidth = 60;
             int fieldHeight = 20;
@@ -394,27 +409,15 @@ public class MainScreen extends Screen implements ScreenHandlerProvider<MainScre
                 boolean boundingBoxEnabled = boundingBoxCheckbox != null ? boundingBoxCheckbox.isChecked() : announceTile.isBoundingBoxEnabled();
                 boolean repeatMode = repeatModeCheckbox != null ? repeatModeCheckbox.isChecked() : announceTile.isRepeatMode();
                 boolean excludePlayersAbove = excludePlayersAboveCheckbox != null ? excludePlayersAboveCheckbox.isChecked() : announceTile.isExcludePlayersAbove();
-                String triggerMode = announceTile.getTriggerMode(); // Always EXACT
+                String triggerMode = announceTile.getTriggerMode();
 
                 // Send update packet with all current values
-                sendUpdatePacket(announceTile.getPos(), seconds, selectedPlatforms, entries, volume, range, currentAttenuationType, boundingBoxEnabled, startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove);
+                AnnounceConfig config = new AnnounceConfig(seconds, selectedPlatforms, entries, volume, range, currentAttenuationType, boundingBoxEnabled, startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove)
+                        .withTemplate(announceTile.getConfig().templateId); // 共有テンプレートの参照は保つ
+                sendUpdatePacket(announceTile.getPos(), config);
 
                 // Also update local tile immediately for responsive UI
-                announceTile.setSeconds(seconds);
-                announceTile.setSelectedPlatformIds(selectedPlatforms);
-                announceTile.setAnnouncementEntries(entries);
-                announceTile.setSoundVolume(volume);
-                announceTile.setSoundRange(range);
-                announceTile.setAttenuationType(currentAttenuationType);
-                announceTile.setBoundingBoxEnabled(boundingBoxEnabled);
-                announceTile.setRepeatMode(repeatMode);
-                announceTile.setExcludePlayersAbove(excludePlayersAbove);
-                announceTile.setStartX(startX);
-                announceTile.setStartY(startY);
-                announceTile.setStartZ(startZ);
-                announceTile.setEndX(endX);
-                announceTile.setEndY(endY);
-                announceTile.setEndZ(endZ);
+                announceTile.applyConfig(config);
                 this.close();
             } catch (NumberFormatException e) {
                 // Invalid seconds value - don't save
@@ -430,73 +433,16 @@ public class MainScreen extends Screen implements ScreenHandlerProvider<MainScre
         saveAndClose();
     }
 
-    private void sendUpdatePacket(BlockPos pos, int seconds, List<Long> selectedPlatforms, List<AnnouncementEntry> announcementEntries, float volume, int range, String attenuationType, boolean boundingBoxEnabled, int startX, int startY, int startZ, int endX, int endY, int endZ, boolean repeatMode) {
-        sendUpdatePacket(pos, seconds, selectedPlatforms, announcementEntries, volume, range, attenuationType, boundingBoxEnabled, startX, startY, startZ, endX, endY, endZ, "EXACT", repeatMode, false);
-    }
-
-    private void sendUpdatePacket(BlockPos pos, int seconds, List<Long> selectedPlatforms, List<AnnouncementEntry> announcementEntries, float volume, int range, String attenuationType, boolean boundingBoxEnabled, int startX, int startY, int startZ, int endX, int endY, int endZ, boolean repeatMode, boolean excludePlayersAbove) {
-        sendUpdatePacket(pos, seconds, selectedPlatforms, announcementEntries, volume, range, attenuationType, boundingBoxEnabled, startX, startY, startZ, endX, endY, endZ, "EXACT", repeatMode, excludePlayersAbove);
-    }
-
-    private void sendUpdatePacket(BlockPos pos, int seconds, List<Long> selectedPlatforms, List<AnnouncementEntry> announcementEntries, float volume, int range, String attenuationType, boolean boundingBoxEnabled, int startX, int startY, int startZ, int endX, int endY, int endZ, String triggerMode, boolean repeatMode) {
-        sendUpdatePacket(pos, seconds, selectedPlatforms, announcementEntries, volume, range, attenuationType, boundingBoxEnabled, startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, false);
-    }
-
-    private void sendUpdatePacket(BlockPos pos, int seconds, List<Long> selectedPlatforms, List<AnnouncementEntry> announcementEntries, float volume, int range, String attenuationType, boolean boundingBoxEnabled, int startX, int startY, int startZ, int endX, int endY, int endZ, String triggerMode, boolean repeatMode, boolean excludePlayersAbove) {
+    private void sendUpdatePacket(BlockPos pos, AnnounceConfig config) {
         if (MinecraftClient.getInstance().player == null) {
             return;
         }
 
         PacketByteBuf buf = PacketByteBufs.create();
-        buf.writeBlockPos(pos);
-        buf.writeInt(seconds);
-        buf.writeLongArray(selectedPlatforms.stream().mapToLong(Long::longValue).toArray());
-
-        // Write announcement entries
-        buf.writeInt(announcementEntries.size());
-        for (AnnouncementEntry entry : announcementEntries) {
-            buf.writeString(entry.getJsonName());
-            buf.writeInt(entry.getDelaySeconds());
-        }
-
-        // Write sound configuration
-        buf.writeFloat(volume);
-        buf.writeInt(range);
-        buf.writeString(attenuationType);
-
-        // Write bounding box enabled
-        buf.writeBoolean(boundingBoxEnabled);
-
-        // Write XYZ coordinates
-        buf.writeInt(startX);
-        buf.writeInt(startY);
-        buf.writeInt(startZ);
-        buf.writeInt(endX);
-        buf.writeInt(endY);
-        buf.writeInt(endZ);
-
-        // Write trigger mode
-        buf.writeString(triggerMode);
-
-        // Write repeat mode
-        buf.writeBoolean(repeatMode);
-        
-        // Write exclude players above
-        buf.writeBoolean(excludePlayersAbove);
-
+        AnnounceCodec.writeConfig(buf, pos, config, 0);
         ClientPlayNetworking.send(AnnounceSendToClient.ID, buf);
     }
     
-    // Legacy support method
-    private void sendUpdatePacket(BlockPos pos, int seconds, List<Long> selectedPlatforms, String selectedJson) {
-        List<AnnouncementEntry> entries = new ArrayList<>();
-        if (selectedJson != null && !selectedJson.trim().isEmpty()) {
-            entries.add(new AnnouncementEntry(selectedJson, 0));
-        }
-        // Use default sound settings and coordinates for legacy calls
-        sendUpdatePacket(pos, seconds, selectedPlatforms, entries, 2.0F, 64, "LINEAR", false, -100, -64, -100, 100, 320, 100, "EXACT", false);
-    }
-
     @Override
     public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
         // Save on ESC key press
@@ -548,7 +494,9 @@ public class MainScreen extends Screen implements ScreenHandlerProvider<MainScre
 
         AnnounceTile announceTile = getAnnounceTile();
         if (announceTile != null) {
-            announceTile.setAnnouncementEntries(announcementEntries); // Set entries in tile
+            if (!announceTile.getConfig().usesTemplate()) {
+                announceTile.setAnnouncementEntries(announcementEntries); // Set entries in tile
+            }
             announceTile.markDirty(); // 追加
             
             // Update coordinate fields if they exist
@@ -773,6 +721,13 @@ public class MainScreen extends Screen implements ScreenHandlerProvider<MainScre
         }
     }
     
+    private Text getTriggerModeText(String triggerMode) {
+        String key = AnnounceTile.TRIGGER_MODE_CROSSING.equals(triggerMode)
+            ? "gui.easyannouncement.trigger_mode.crossing"
+            : "gui.easyannouncement.trigger_mode.exact";
+        return Text.translatable("gui.easyannouncement.trigger_mode", Text.translatable(key));
+    }
+
     private String getAttenuationDisplayName(String type) {
         switch (type) {
             case "NONE":
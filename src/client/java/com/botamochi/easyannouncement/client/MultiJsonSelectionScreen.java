@@ -1,5 +1,6 @@
 package com.botamochi.easyannouncement.client;
 
+import com.botamochi.easyannouncement.data.AnnounceTemplate;
 import com.botamochi.easyannouncement.data.AnnouncementEntry;
 import com.botamochi.easyannouncement.tile.AnnounceTile;
 import net.minecraft.client.MinecraftClient;
@@ -36,6 +37,8 @@ public class MultiJsonSelectionScreen extends Screen {
     private final AnnounceTile announceTile;
     private final Screen parent;
     private List<AnnouncementEntry> workingEntries;
+    // 共有テンプレートを使っている場合、その内容 (変更せずに保存すればテンプレートのまま)
+    private final AnnounceTemplate template;
     private List<String> availableJsonFiles;
     private List<ButtonWidget> entryButtons;
     private List<TextFieldWidget> delayFields;
@@ -76,10 +79,11 @@ public class MultiJsonSelectionScreen extends Screen {
         this.announceTile = announceTile;
         this.parent = parent;
         this.workingEntries = new ArrayList<>();
+        this.template = announceTile.getConfig().usesTemplate() ? announceTile.getTemplatePreview() : null;
         
-        // Copy current entries from tile
-        for (AnnouncementEntry entry : announceTile.getAnnouncementEntries()) {
-            this.workingEntries.add(entry.copy());
+        // Copy current entries from tile (or from its shared template)
+        for (AnnouncementEntry entry : template != null ? template.entries : announceTile.getAnnouncementEntries()) {
+            this.workingEntries.add(entry);
         }
         
         // Ensure at least one empty entry for adding new ones
@@ -371,7 +375,7 @@ public class MultiJsonSelectionScreen extends Screen {
         if (index >= workingEntries.size()) return;
         try {
             int delay = Integer.parseInt(text);
-            workingEntries.get(index).setDelaySeconds(Math.max(0, delay));
+            workingEntries.set(index, workingEntries.get(index).withDelaySeconds(Math.max(0, delay)));
         } catch (NumberFormatException e) {
             // Invalid input, ignore
         }
@@ -388,7 +392,7 @@ public class MultiJsonSelectionScreen extends Screen {
             this,
             availableJsonFiles,
             selectedJson -> {
-                entry.setJsonName(selectedJson);
+                workingEntries.set(entryIndex, entry.withJsonName(selectedJson));
                 init(); // Refresh the display when returning
             },
             currentJson
@@ -433,6 +437,12 @@ public class MultiJsonSelectionScreen extends Screen {
             .filter(entry -> !entry.isEmpty())
             .collect(Collectors.toList());
         
+        // テンプレートの内容から変えていなければ、テンプレートから外さない
+        if (announceTile.getConfig().usesTemplate() && validEntries.equals(template != null ? template.entries : List.of())) {
+            close();
+            return;
+        }
+
         // Update the tile with the new entries
         announceTile.setAnnouncementEntries(validEntries);
         announceTile.markDirty();
@@ -459,6 +469,11 @@ public class MultiJsonSelectionScreen extends Screen {
         
         // Title with modern styling
         drawCenteredText(matrices, textRenderer, title, width / 2, panelY + 12, 0xFFFFFFFF);
+        // 共有テンプレートを使っている場合、ここで保存するとテンプレートから外れる
+        if (announceTile.getConfig().usesTemplate()) {
+            String templateName = template != null ? template.name + " v" + template.version : "#" + announceTile.getConfig().templateId;
+            drawCenteredText(matrices, textRenderer, Text.translatable("gui.easyannouncement.template_in_use", templateName), width / 2, panelY + 21, 0xFFFFCC55);
+        }
         
         // Add labels for better understanding
         String jsonLabel = Text.translatable("gui.easyannouncement.json_files").getString();
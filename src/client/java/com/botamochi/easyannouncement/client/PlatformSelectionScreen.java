@@ -1,5 +1,7 @@
 package com.botamochi.easyannouncement.client;
 
+import com.botamochi.easyannouncement.data.AnnounceConfig;
+import com.botamochi.easyannouncement.network.AnnounceCodec;
 import com.botamochi.easyannouncement.network.AnnounceSendToClient;
 import com.botamochi.easyannouncement.tile.AnnounceTile;
 import com.botamochi.easyannouncement.data.AnnouncementEntry;
@@ -137,7 +139,6 @@ public class PlatformSelectionScreen extends Screen {
             if (blockEntity instanceof AnnounceTile announceTile) {
                 try {
                     int seconds = announceTile.getSeconds(); // AnnounceTileから秒数を取得
-                    announceTile.setSeconds(seconds); // 秒数をAnnounceTileに設定
                     announceTile.setSelectedPlatformIds(new ArrayList<>(selectedPlatforms)); // プラットフォームIDを設定
                     List<AnnouncementEntry> entries = announceTile.getAnnouncementEntries(); // 複数エントリを取得
                     sendUpdatePacket(blockPos, seconds, selectedPlatforms, entries); // サーバーに送信
@@ -154,78 +155,17 @@ public class PlatformSelectionScreen extends Screen {
             return;
         }
 
-        // サーバーにパケットを送信
-        PacketByteBuf buf = PacketByteBufs.create();
-        buf.writeBlockPos(pos);
-        buf.writeInt(seconds);  // 秒数を送信
-        buf.writeLongArray(selectedPlatforms.stream().mapToLong(Long::longValue).toArray());  // 選択したプラットフォームを送信
-        
-        // Write announcement entries in the expected format
-        if (entries != null && !entries.isEmpty()) {
-            buf.writeInt(entries.size());
-            for (AnnouncementEntry entry : entries) {
-                buf.writeString(entry.getJsonName());
-                buf.writeInt(entry.getDelaySeconds());
-            }
-        } else {
-            buf.writeInt(0); // No entries
-        }
-        
-        // Write sound configuration (defaults)
-        float volume = 2.0F;
-        int range = 64;
-        String attenuationType = "LINEAR";
-        boolean boundingBoxEnabled = false;
-        int startX = -100, startY = -64, startZ = -100, endX = 100, endY = 320, endZ = 100;
-
-        // Use current tile configuration if available
+        // サーバーにパケットを送信 (タイルの他の設定はそのまま)
+        List<Long> platformIds = new ArrayList<>(selectedPlatforms);
+        List<AnnouncementEntry> announcementEntries = entries != null ? entries : new ArrayList<>();
+        AnnounceConfig base = AnnounceConfig.DEFAULT;
         if (MinecraftClient.getInstance().world != null &&
             MinecraftClient.getInstance().world.getBlockEntity(pos) instanceof AnnounceTile tile) {
-            volume = tile.getSoundVolume();
-            range = tile.getSoundRange();
-            attenuationType = tile.getAttenuationType();
-            boundingBoxEnabled = tile.isBoundingBoxEnabled();
-            startX = tile.getStartX();
-            startY = tile.getStartY();
-            startZ = tile.getStartZ();
-            endX = tile.getEndX();
-            endY = tile.getEndY();
-            endZ = tile.getEndZ();
-        }
-
-        // Write sound configuration
-        buf.writeFloat(volume);
-        buf.writeInt(range);
-        buf.writeString(attenuationType);
-
-        // Write bounding box enabled flag and coordinates in expected order
-        buf.writeBoolean(boundingBoxEnabled);
-        buf.writeInt(startX);
-        buf.writeInt(startY);
-        buf.writeInt(startZ);
-        buf.writeInt(endX);
-        buf.writeInt(endY);
-        buf.writeInt(endZ);
-        
-        // Write trigger mode last (optional older server compatibility)
-        String triggerMode = "EXACT";
-        boolean repeatMode = false;
-        boolean excludePlayersAbove = false;
-        if (MinecraftClient.getInstance().world != null &&
-            MinecraftClient.getInstance().world.getBlockEntity(pos) instanceof AnnounceTile tile2) {
-            triggerMode = tile2.getTriggerMode();
-            repeatMode = tile2.isRepeatMode();
-            excludePlayersAbove = tile2.isExcludePlayersAbove();
+            base = tile.getConfig();
         }
-        buf.writeString(triggerMode);
-
-        // Write repeat mode (optional for older servers)
-        buf.writeBoolean(repeatMode);
-
-        // Write exclude players above setting (optional for older servers)
-        buf.writeBoolean(excludePlayersAbove);
+        PacketByteBuf buf = PacketByteBufs.create();
+        AnnounceCodec.writeConfig(buf, pos, base.withSchedule(seconds, platformIds, announcementEntries), 0);
 
-        // サーバーに送信
         ClientPlayNetworking.send(AnnounceSendToClient.ID, buf); // IDの変更
     }
 
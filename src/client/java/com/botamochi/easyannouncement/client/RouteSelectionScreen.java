@@ -1,5 +1,6 @@
 package com.botamochi.easyannouncement.client;
 
+import com.botamochi.easyannouncement.network.AnnounceCodec;
 import com.botamochi.easyannouncement.tile.AnnounceTile;
 import mtr.client.ClientData;
 import mtr.client.ClientCache;
@@ -163,24 +164,8 @@ public class RouteSelectionScreen extends Screen {
 				}
 
 				announceTile.setSelectedPlatformIds(new ArrayList<>(platformIds));
-				int seconds = announceTile.getSeconds();
-				var entries = announceTile.getAnnouncementEntries();
 				PacketByteBuf buf = PacketByteBufs.create();
-				buf.writeBlockPos(blockPos);
-				buf.writeInt(seconds);
-				buf.writeLongArray(platformIds.stream().mapToLong(Long::longValue).toArray());
-				buf.writeInt(entries.size());
-				entries.forEach(e -> { buf.writeString(e.getJsonName()); buf.writeInt(e.getDelaySeconds()); });
-				buf.writeFloat(announceTile.getSoundVolume());
-				buf.writeInt(announceTile.getSoundRange());
-				buf.writeString(announceTile.getAttenuationType());
-				buf.writeBoolean(announceTile.isBoundingBoxEnabled());
-				buf.writeInt(announceTile.getStartX());
-				buf.writeInt(announceTile.getStartY());
-				buf.writeInt(announceTile.getStartZ());
-				buf.writeInt(announceTile.getEndX());
-				buf.writeInt(announceTile.getEndY());
-				buf.writeInt(announceTile.getEndZ());
+				AnnounceCodec.writeConfig(buf, announceTile.getPos(), announceTile.getConfig(), 0);
 				ClientPlayNetworking.send(com.botamochi.easyannouncement.network.AnnounceSendToClient.ID, buf);
 			}
 		}
@@ -2,18 +2,36 @@
 package com.botamochi.easyannouncement;
 
 import com.botamochi.easyannouncement.block.AnnounceBlock;
+import com.botamochi.easyannouncement.command.EACommand;
+import com.botamochi.easyannouncement.config.EAConfig;
+import com.botamochi.easyannouncement.data.AnnounceConfig;
 import com.botamochi.easyannouncement.event.PlatformSelectionEvent;
 import com.botamochi.easyannouncement.item.EATab;
+import com.botamochi.easyannouncement.network.AnnounceConfigSync;
+import com.botamochi.easyannouncement.network.AnnounceIngress;
+import com.botamochi.easyannouncement.network.AnnounceProtocol;
 import com.botamochi.easyannouncement.network.AnnounceSendToClient;
+import com.botamochi.easyannouncement.network.AnnounceSyncQueue;
 import com.botamochi.easyannouncement.registry.EASounds;
 import com.botamochi.easyannouncement.registry.EATile;
+import com.botamochi.easyannouncement.schedule.AnnounceScheduler;
+import com.botamochi.easyannouncement.schedule.EvaluationWorkers;
+import com.botamochi.easyannouncement.schedule.RouteTokenCache;
 import com.botamochi.easyannouncement.screen.EAScreenHandlers;
 import com.botamochi.easyannouncement.tile.AnnounceTile;
-import com.botamochi.easyannouncement.world.AnnounceTilePositionsSavedData;
+import com.botamochi.easyannouncement.world.ActiveAnnouncers;
+import com.botamochi.easyannouncement.world.AnnounceTemplateRegistry;
+import com.botamochi.easyannouncement.world.AnnouncerReconciler;
+import com.botamochi.easyannouncement.world.AnnouncerRegistry;
+import com.botamochi.easyannouncement.world.PlayerSpatialIndex;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerBlockEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.object.builder.v1.block.FabricBlockSettings;
 import net.minecraft.block.Block;
 import net.minecraft.block.MapColor;
@@ -36,9 +54,6 @@ public class Easyannouncement implements ModInitializer {
 
     public static String MOD_ID = "easyannouncement";
     public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
-    // AnnounceTileが設置されている場所を追跡するセット
-    private static final Set<BlockPos> announceTilePositions = new HashSet<>();
-    private static AnnounceTilePositionsSavedData savedData;
 
     public static Block EA_BLOCK = new AnnounceBlock(FabricBlockSettings.of(Material.GLASS).strength(6.0f, 6.0f).mapColor(MapColor.WHITE_GRAY).nonOpaque());
     public static BlockItem EA_BLOCKITEM = new BlockItem(EA_BLOCK, new Item.Settings().group(EATab.EA));
@@ -46,6 +61,9 @@ public class Easyannouncement implements ModInitializer {
 
     @Override
     public void onInitialize() {
+        // 設定の読み込み
+        EAConfig.load();
+
         // ブロックとブロックアイテムの登録
         Registry.register(Registry.BLOCK, id("announce_block"), EA_BLOCK);
         Registry.register(Registry.ITEM, id("announce_block"), EA_BLOCKITEM);
@@ -61,27 +79,72 @@ public class Easyannouncement implements ModInitializer {
 
         // サーバー側でパケットを受信する
         AnnounceSendToClient.register();
+        AnnounceConfigSync.register();
+        AnnounceProtocol.register();
         AnnounceSendToClient.registerAnnouncementFinishedHandler();
 
+        // ディメンションごとに位置レジストリを読み込む
         ServerWorldEvents.LOAD.register((server, world) -> {
-            if (!world.isClient()) {
-                savedData = AnnounceTilePositionsSavedData.createAndLoad((ServerWorld) world);
+            AnnouncerRegistry.load(world);
+            // 共有テンプレートはオーバーワールドに保存する
+            if (world.getRegistryKey() == World.OVERWORLD) {
+                AnnounceTemplateRegistry.load(world);
+            }
+        });
+        ServerWorldEvents.UNLOAD.register((server, world) -> {
+            ActiveAnnouncers.clear(world);
+            AnnounceScheduler.remove(world);
+            AnnouncerRegistry.unload(world);
+            AnnouncerReconciler.remove(world);
+            PlayerSpatialIndex.remove(world);
+            AnnounceSyncQueue.remove(world);
+        });
+        ServerLifecycleEvents.SERVER_STARTING.register(server -> EvaluationWorkers.start(EAConfig.get().getWorkerThreads()));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            EvaluationWorkers.shutdown();
+            ActiveAnnouncers.clear();
+            AnnounceScheduler.clear();
+            AnnouncerRegistry.clear();
+            AnnouncerReconciler.clear();
+            AnnounceTemplateRegistry.clear();
+            PlayerSpatialIndex.clear();
+            RouteTokenCache.invalidate();
+            AnnounceSyncQueue.clear();
+            AnnounceIngress.clear();
+            AnnounceProtocol.clear();
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> AnnounceIngress.remove(handler.player));
+
+        // ロード済みチャンクの AnnounceTile だけをアクティブセットに保持する
+        ServerChunkEvents.CHUNK_LOAD.register((world, chunk) -> ActiveAnnouncers.onChunkLoad(world, chunk, AnnouncerRegistry.get(world)));
+        ServerChunkEvents.CHUNK_UNLOAD.register(ActiveAnnouncers::onChunkUnload);
+        ServerBlockEntityEvents.BLOCK_ENTITY_LOAD.register((blockEntity, world) -> {
+            if (blockEntity instanceof AnnounceTile announceTile) {
+                ActiveAnnouncers.activate(world, announceTile);
             }
         });
+        ServerBlockEntityEvents.BLOCK_ENTITY_UNLOAD.register((blockEntity, world) -> {
+            if (blockEntity instanceof AnnounceTile) {
+                ActiveAnnouncers.deactivate(world, blockEntity.getPos());
+            }
+        });
+
+        // 前のティックの間に届いたクライアントからの設定を適用する
+        ServerTickEvents.START_SERVER_TICK.register(AnnounceIngress::drain);
 
+        // 発火時刻が来たアナウンサーだけをタイミングホイールから取り出し、tick 予算内で評価する
         ServerTickEvents.END_SERVER_TICK.register(server -> {
-            for (World world : server.getWorlds()) {
-                if (!world.isClient() && savedData != null) {
-                    for (BlockPos pos : new ArrayList<>(savedData.getPositions())) {
-                        BlockEntity blockEntity = world.getBlockEntity(pos);
-                        if (blockEntity instanceof AnnounceTile) {
-                            AnnounceTile announceTile = (AnnounceTile) blockEntity;
-                            AnnounceTile.tick(world, pos, world.getBlockState(pos), announceTile);
-                        }
-                    }
-                }
-            }
+            if (server.isStopping()) return;
+            PlayerSpatialIndex.tick(server);
+            AnnounceScheduler.tickAll(server);
+            // このティックに変更された設定をまとめて同期する
+            AnnounceSyncQueue.flush(server);
+            // 位置レジストリに残った古いエントリを少しずつ確認する
+            AnnouncerReconciler.tick(server);
         });
+
+        // 管理用コマンド
+        CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> EACommand.register(dispatcher));
     }
 
     public static Identifier id(String path) {
@@ -96,15 +159,16 @@ public class Easyannouncement implements ModInitializer {
     }
 
     // AnnounceTileが設置される際に呼び出されるメソッド
-    public static void registerAnnounceTilePosition(BlockPos pos) {
-        if (savedData != null) {
-            savedData.addPosition(pos);
+    public static void registerAnnounceTilePosition(World world, BlockPos pos) {
+        if (world instanceof ServerWorld serverWorld) {
+            AnnouncerRegistry.get(serverWorld).addPosition(pos);
         }
     }
 
-    public static void unregisterAnnounceTilePosition(BlockPos pos) {
-        if (savedData != null) {
-            savedData.removePosition(pos);
+    public static void unregisterAnnounceTilePosition(World world, BlockPos pos) {
+        if (world instanceof ServerWorld serverWorld) {
+            AnnouncerRegistry.get(serverWorld).removePosition(pos);
+            AnnounceTemplateRegistry.setUser(serverWorld, pos, AnnounceConfig.NO_TEMPLATE);
         }
     }
 }
\ No newline at end of file
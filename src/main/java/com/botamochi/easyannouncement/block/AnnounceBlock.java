@@ -42,12 +42,8 @@ public class AnnounceBlock extends BlockWithEntity {
 
     @Override
     public BlockEntity createBlockEntity(BlockPos pos, BlockState state) {
-        AnnounceTile announceTile = new AnnounceTile(pos, state);
-
-        // AnnounceTile が設置された位置を登録
-        Easyannouncement.registerAnnounceTilePosition(pos);
-
-        return announceTile;
+        // 位置の登録はワールドが分かる AnnounceTile.setWorld / onPlaced で行う
+        return new AnnounceTile(pos, state);
     }
 
     // BlockEntity が削除されるときに呼ばれる
@@ -55,7 +51,7 @@ public class AnnounceBlock extends BlockWithEntity {
     public void onBreak(World world, BlockPos pos, BlockState state, PlayerEntity player) {
         BlockEntity blockEntity = world.getBlockEntity(pos);
         if (blockEntity instanceof AnnounceTile) {
-            Easyannouncement.unregisterAnnounceTilePosition(pos);  // AnnounceTile の位置を登録解除
+            Easyannouncement.unregisterAnnounceTilePosition(world, pos);  // AnnounceTile の位置を登録解除
         }
     }
 
@@ -63,7 +59,7 @@ public class AnnounceBlock extends BlockWithEntity {
     public void onStateReplaced(BlockState state, World world, BlockPos pos, BlockState newState, boolean moved) {
         if (!state.isOf(newState.getBlock())) {
             if (!world.isClient()) {
-                Easyannouncement.unregisterAnnounceTilePosition(pos);
+                Easyannouncement.unregisterAnnounceTilePosition(world, pos);
             }
             super.onStateReplaced(state, world, pos, newState, moved);
         }
@@ -73,7 +69,7 @@ public class AnnounceBlock extends BlockWithEntity {
     public void onPlaced(World world, BlockPos pos, BlockState state, LivingEntity placer, ItemStack itemStack) {
         super.onPlaced(world, pos, state, placer, itemStack);
         if (!world.isClient()) {
-            Easyannouncement.registerAnnounceTilePosition(pos);
+            Easyannouncement.registerAnnounceTilePosition(world, pos);
         }
     }
 }
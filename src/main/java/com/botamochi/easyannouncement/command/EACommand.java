@@ -0,0 +1,203 @@
+package com.botamochi.easyannouncement.command;
+
+import com.botamochi.easyannouncement.config.EAConfig;
+import com.botamochi.easyannouncement.data.AnnounceTemplate;
+import com.botamochi.easyannouncement.data.AnnouncementEntry;
+import com.botamochi.easyannouncement.schedule.AnnounceScheduler;
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import com.botamochi.easyannouncement.world.ActiveAnnouncers;
+import com.botamochi.easyannouncement.world.AnnounceTemplateRegistry;
+import com.botamochi.easyannouncement.world.AnnounceTemplateSavedData;
+import com.botamochi.easyannouncement.world.AnnounceTilePositionsSavedData;
+import com.botamochi.easyannouncement.world.AnnouncerReconciler;
+import com.botamochi.easyannouncement.world.AnnouncerRegistry;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /easyannouncement コマンド (OP レベル 2)。
+ * {@code status} reports the scheduler load: armed announcers, deferred work and tick-budget overruns.
+ * {@code drift} reports the position registry and how many stale entries the reconciler has removed.
+ * {@code template} manages the shared announcement templates: {@code save} copies an announcer's sequence into
+ * a named template (a new version if the name exists), {@code apply} / {@code detach} switch an announcer between
+ * a template and its own copy. {@code remove} refuses while announcers (loaded or not) still use the template,
+ * unless followed by {@code force}.
+ */
+public class EACommand {
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("easyannouncement")
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(CommandManager.literal("status").executes(EACommand::status))
+                .then(CommandManager.literal("drift").executes(EACommand::drift))
+                .then(CommandManager.literal("template")
+                        .then(CommandManager.literal("list").executes(EACommand::listTemplates))
+                        .then(CommandManager.literal("save")
+                                .then(CommandManager.argument("name", StringArgumentType.word())
+                                        .then(CommandManager.argument("pos", BlockPosArgumentType.blockPos()).executes(EACommand::saveTemplate))))
+                        .then(CommandManager.literal("apply")
+                                .then(CommandManager.argument("name", StringArgumentType.word())
+                                        .then(CommandManager.argument("pos", BlockPosArgumentType.blockPos()).executes(EACommand::applyTemplate))))
+                        .then(CommandManager.literal("detach")
+                                .then(CommandManager.argument("pos", BlockPosArgumentType.blockPos()).executes(EACommand::detachTemplate)))
+                        .then(CommandManager.literal("remove")
+                                .then(CommandManager.argument("name", StringArgumentType.word())
+                                        .executes(context -> removeTemplate(context, false))
+                                        .then(CommandManager.literal("force").executes(context -> removeTemplate(context, true)))))));
+    }
+
+    private static int status(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        source.sendFeedback(Text.translatable("command.easyannouncement.status.budget",
+                EAConfig.get().tickBudgetNanos / 1000, AnnounceScheduler.getLastTickNanos() / 1000,
+                AnnounceScheduler.getMaxTickNanos() / 1000, AnnounceScheduler.getOverrunTicks()), false);
+        for (Map.Entry<RegistryKey<World>, AnnounceScheduler> entry : AnnounceScheduler.getSchedulers().entrySet()) {
+            AnnounceScheduler scheduler = entry.getValue();
+            source.sendFeedback(Text.translatable("command.easyannouncement.status.world",
+                    entry.getKey().getValue().toString(), scheduler.getArmedCount(), scheduler.getGroupCount(),
+                    scheduler.getArrivalIndex().size(), scheduler.getPendingCount(), scheduler.getDeferredTotal(),
+                    scheduler.getPendingRefreshCount(), scheduler.getInFlightCount()), false);
+        }
+        return 1;
+    }
+
+    private static int drift(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        for (ServerWorld world : source.getServer().getWorlds()) {
+            AnnounceTilePositionsSavedData savedData = AnnouncerRegistry.get(world);
+            AnnouncerReconciler.State state = AnnouncerReconciler.getStates().get(world.getRegistryKey());
+            if (state == null) {
+                source.sendFeedback(Text.translatable("command.easyannouncement.drift.unchecked",
+                        world.getRegistryKey().getValue().toString(), savedData.size(), savedData.getChunks().size()), false);
+                continue;
+            }
+            source.sendFeedback(Text.translatable("command.easyannouncement.drift.world",
+                    world.getRegistryKey().getValue().toString(), savedData.size(), savedData.getChunks().size(),
+                    state.getRemovedTotal(), state.getLastPassRemoved(), state.getLastPassSkipped(),
+                    state.getPasses(), state.getPendingChunkCount()), false);
+        }
+        return 1;
+    }
+
+    private static int listTemplates(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        AnnounceTemplateSavedData templates = AnnounceTemplateRegistry.get();
+        if (templates == null || templates.getAll().isEmpty()) {
+            source.sendFeedback(Text.translatable("command.easyannouncement.template.none"), false);
+            return 0;
+        }
+        for (AnnounceTemplate template : templates.getAll().values()) {
+            source.sendFeedback(Text.translatable("command.easyannouncement.template.entry",
+                    template.id, template.name, template.version, template.entries.size()), false);
+        }
+        return templates.getAll().size();
+    }
+
+    private static int saveTemplate(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        AnnounceTemplateSavedData templates = AnnounceTemplateRegistry.get();
+        AnnounceTile tile = getTile(context);
+        if (templates == null || tile == null) return 0;
+        List<AnnouncementEntry> entries = tile.getEffectiveEntries();
+        if (entries.isEmpty()) {
+            source.sendError(Text.translatable("command.easyannouncement.template.no_entries"));
+            return 0;
+        }
+        AnnounceTemplate template = templates.save(StringArgumentType.getString(context, "name"), entries);
+        // 開いている画面には古い版のテンプレートが表示されているので送り直す
+        for (ServerWorld world : source.getServer().getWorlds()) {
+            for (AnnounceTile user : ActiveAnnouncers.get(world)) {
+                if (user.getConfig().templateId == template.id) {
+                    user.markTemplateChanged();
+                }
+            }
+        }
+        source.sendFeedback(Text.translatable("command.easyannouncement.template.saved",
+                template.id, template.name, template.version, template.entries.size()), true);
+        return template.id;
+    }
+
+    private static int applyTemplate(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        AnnounceTemplateSavedData templates = AnnounceTemplateRegistry.get();
+        AnnounceTile tile = getTile(context);
+        if (templates == null || tile == null) return 0;
+        AnnounceTemplate template = templates.getByName(StringArgumentType.getString(context, "name"));
+        if (template == null) {
+            source.sendError(Text.translatable("command.easyannouncement.template.unknown", StringArgumentType.getString(context, "name")));
+            return 0;
+        }
+        tile.applyConfig(tile.getConfig().withTemplate(template.id));
+        source.sendFeedback(Text.translatable("command.easyannouncement.template.applied",
+                tile.getPos().toShortString(), template.id, template.name), true);
+        return 1;
+    }
+
+    private static int detachTemplate(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        AnnounceTile tile = getTile(context);
+        if (tile == null) return 0;
+        if (!tile.getConfig().usesTemplate()) {
+            source.sendError(Text.translatable("command.easyannouncement.template.not_used"));
+            return 0;
+        }
+        AnnounceTemplateSavedData templates = AnnounceTemplateRegistry.get();
+        AnnounceTemplate template = templates != null ? templates.get(tile.getConfig().templateId) : null;
+        if (template == null) {
+            // 削除済みのテンプレートからは空の内容しかコピーできないので、シーケンスを消さずに止める
+            source.sendError(Text.translatable("command.easyannouncement.template.missing", tile.getConfig().templateId));
+            return 0;
+        }
+        // 現在のテンプレートの内容を自分のコピーとして持たせる
+        tile.applyConfig(tile.getConfig().withEntries(template.entries));
+        source.sendFeedback(Text.translatable("command.easyannouncement.template.detached", tile.getPos().toShortString()), true);
+        return 1;
+    }
+
+    private static int removeTemplate(CommandContext<ServerCommandSource> context, boolean force) {
+        ServerCommandSource source = context.getSource();
+        AnnounceTemplateSavedData templates = AnnounceTemplateRegistry.get();
+        if (templates == null) return 0;
+        String name = StringArgumentType.getString(context, "name");
+        AnnounceTemplate template = templates.getByName(name);
+        if (template == null) {
+            source.sendError(Text.translatable("command.easyannouncement.template.unknown", name));
+            return 0;
+        }
+        int users = templates.getUserCount(template.id);
+        if (users > 0 && !force) {
+            source.sendError(Text.translatable("command.easyannouncement.template.in_use",
+                    template.id, template.name, users, template.name));
+            return 0;
+        }
+        templates.remove(name);
+        if (users > 0) {
+            source.sendFeedback(Text.translatable("command.easyannouncement.template.removed_in_use",
+                    template.id, template.name, users), true);
+        } else {
+            source.sendFeedback(Text.translatable("command.easyannouncement.template.removed", template.id, template.name), true);
+        }
+        return 1;
+    }
+
+    private static AnnounceTile getTile(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        BlockPos pos = BlockPosArgumentType.getLoadedBlockPos(context, "pos");
+        if (context.getSource().getWorld().getBlockEntity(pos) instanceof AnnounceTile tile) {
+            return tile;
+        }
+        context.getSource().sendError(Text.translatable("command.easyannouncement.no_announcer", pos.toShortString()));
+        return null;
+    }
+}
@@ -0,0 +1,76 @@
+package com.botamochi.easyannouncement.config;
+
+import com.botamochi.easyannouncement.Easyannouncement;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * サーバー側の設定 (config/easyannouncement.json)。
+ * Missing keys keep their defaults, and the file is rewritten on load so new options show up.
+ */
+public class EAConfig {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String FILE_NAME = Easyannouncement.MOD_ID + ".json";
+    private static EAConfig instance = new EAConfig();
+
+    // 1 サーバー tick あたりにアナウンサー評価へ使ってよい時間 (ナノ秒)。発火直前の評価はこの予算を超えても実行する
+    public long tickBudgetNanos = 2_000_000L;
+    // 時刻表評価のワーカースレッド数。-1 で自動 (コア数の半分, 最大 4)、0 でサーバースレッド上で実行
+    public int workerThreads = -1;
+    // クライアントからの設定更新の上限 (プレイヤーごと)。毎秒の補充量とまとめて送れる数
+    public double configUpdatesPerSecond = 4.0;
+    public int configUpdateBurst = 8;
+    // 位置レジストリの掃除で 1 tick に確認するチャンク数 (ディメンションごと)。0 で無効
+    public int reconcileChunksPerTick = 4;
+
+    public static EAConfig get() {
+        return instance;
+    }
+
+    public static void load() {
+        Path path = FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+        EAConfig loaded = null;
+        if (Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                loaded = GSON.fromJson(reader, EAConfig.class);
+            } catch (Exception e) {
+                Easyannouncement.LOGGER.warn("Failed to read {}, using defaults", path, e);
+            }
+        }
+        instance = loaded != null ? loaded : new EAConfig();
+        instance.validate();
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            GSON.toJson(instance, writer);
+        } catch (IOException e) {
+            Easyannouncement.LOGGER.warn("Failed to write {}", path, e);
+        }
+    }
+
+    public int getWorkerThreads() {
+        if (workerThreads >= 0) return workerThreads;
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    private void validate() {
+        if (tickBudgetNanos <= 0) {
+            tickBudgetNanos = 2_000_000L;
+        }
+        if (configUpdatesPerSecond <= 0) {
+            configUpdatesPerSecond = 4.0;
+        }
+        if (configUpdateBurst < 1) {
+            configUpdateBurst = 8;
+        }
+        if (reconcileChunksPerTick < 0) {
+            reconcileChunksPerTick = 4;
+        }
+    }
+}
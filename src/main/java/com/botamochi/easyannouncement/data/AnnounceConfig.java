@@ -0,0 +1,238 @@
+package com.botamochi.easyannouncement.data;
+
+import com.botamochi.easyannouncement.network.AnnounceConfigSync;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static com.botamochi.easyannouncement.network.AnnounceConfigSync.*;
+
+/**
+ * 告知ブロックの設定 (不変)。
+ * Everything a player can configure on an announcer, as one value. The GUI, the network codec and the tile all
+ * exchange this object, and {@link com.botamochi.easyannouncement.tile.AnnounceTile#applyConfig} applies it in a
+ * single step. Values are normalized (clamped, lists copied and cut to {@link #MAX_PLATFORMS} /
+ * {@link #MAX_ENTRIES}) on construction, so a config read from old NBT always fits in a packet.
+ * <p>
+ * Instances are shared rather than copied: the tile keeps exactly one, unconfigured tiles all point at
+ * {@link #DEFAULT}, platform IDs are a primitive array and the mode strings are the shared constants. Entries are
+ * immutable {@link AnnouncementEntry} values, so only the list around them is copied.
+ * The arrays returned by {@link #getPlatformIds} and {@link #getWatchedPlatformIds} must not be modified.
+ * <p>
+ * A config with a {@link #templateId} plays the entries of that shared {@link AnnounceTemplate} and keeps no
+ * entries of its own.
+ */
+public final class AnnounceConfig {
+    public static final int NO_TEMPLATE = 0;
+    // これを超える分は切り捨てる (パケットの読み込み側も同じ上限で拒否する)
+    public static final int MAX_PLATFORMS = 256;
+    public static final int MAX_ENTRIES = 100;
+
+    public static final String TRIGGER_MODE_EXACT = "EXACT";
+    public static final String TRIGGER_MODE_CROSSING = "CROSSING";
+    public static final String ATTENUATION_LINEAR = "LINEAR";
+    public static final String ATTENUATION_NONE = "NONE";
+
+    // 変わったら放送タイミングを計算し直す必要があるフィールド
+    public static final int TIMING_FIELDS = FIELD_SECONDS | FIELD_PLATFORMS | FIELD_TRIGGER_MODE | FIELD_REPEAT_MODE;
+
+    private static final long[] NO_IDS = new long[0];
+
+    public static final AnnounceConfig DEFAULT = new AnnounceConfig(0, NO_IDS, List.of(),
+            2.0F, 64, ATTENUATION_LINEAR, false, -100, -64, -100, 100, 320, 100, TRIGGER_MODE_EXACT, false, false);
+
+    public final int seconds;
+    private final long[] platformIds;
+    // ソート・重複除去済み。元の並びが既にそうなら platformIds と同じ配列
+    private final long[] watchedPlatformIds;
+    // テンプレート参照中は常に空 (テンプレート側のエントリを使う)
+    public final List<AnnouncementEntry> entries;
+    public final int templateId;
+    public final float volume;
+    public final int range;
+    public final String attenuationType;
+    public final boolean boundingBoxEnabled;
+    public final int startX, startY, startZ, endX, endY, endZ;
+    public final String triggerMode;
+    public final boolean repeatMode;
+    public final boolean excludePlayersAbove;
+
+    public AnnounceConfig(int seconds, long[] platformIds, List<AnnouncementEntry> entries,
+                          float volume, int range, String attenuationType, boolean boundingBoxEnabled,
+                          int startX, int startY, int startZ, int endX, int endY, int endZ,
+                          String triggerMode, boolean repeatMode, boolean excludePlayersAbove) {
+        this(seconds, platformIds, entries, volume, range, attenuationType, boundingBoxEnabled,
+                startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove, NO_TEMPLATE);
+    }
+
+    public AnnounceConfig(int seconds, long[] platformIds, List<AnnouncementEntry> entries,
+                          float volume, int range, String attenuationType, boolean boundingBoxEnabled,
+                          int startX, int startY, int startZ, int endX, int endY, int endZ,
+                          String triggerMode, boolean repeatMode, boolean excludePlayersAbove, int templateId) {
+        this.seconds = seconds;
+        this.platformIds = platformIds.length == 0 ? NO_IDS : Arrays.copyOf(platformIds, Math.min(platformIds.length, MAX_PLATFORMS));
+        this.watchedPlatformIds = sortedDistinct(this.platformIds);
+        this.templateId = Math.max(NO_TEMPLATE, templateId);
+        if (this.templateId != NO_TEMPLATE || entries.isEmpty()) {
+            this.entries = List.of();
+        } else {
+            // エントリ自体は不変なので、リストだけ複製する
+            this.entries = List.copyOf(entries.size() > MAX_ENTRIES ? entries.subList(0, MAX_ENTRIES) : entries);
+        }
+        this.volume = Math.max(0.1F, Math.min(3.0F, volume)); // Clamp between 0.1 and 3.0
+        this.range = Math.max(16, Math.min(128, range)); // Clamp between 16 and 128
+        // NBT やパケットから来た文字列をタイルごとに持たないよう定数に寄せる
+        this.attenuationType = canonical(attenuationType, ATTENUATION_LINEAR, ATTENUATION_NONE);
+        this.boundingBoxEnabled = boundingBoxEnabled;
+        this.startX = startX;
+        this.startY = startY;
+        this.startZ = startZ;
+        this.endX = endX;
+        this.endY = endY;
+        this.endZ = endZ;
+        this.triggerMode = canonical(triggerMode, TRIGGER_MODE_EXACT, TRIGGER_MODE_CROSSING);
+        this.repeatMode = repeatMode;
+        this.excludePlayersAbove = excludePlayersAbove;
+    }
+
+    public AnnounceConfig(int seconds, List<Long> platformIds, List<AnnouncementEntry> entries,
+                          float volume, int range, String attenuationType, boolean boundingBoxEnabled,
+                          int startX, int startY, int startZ, int endX, int endY, int endZ,
+                          String triggerMode, boolean repeatMode, boolean excludePlayersAbove) {
+        this(seconds, platformIds.stream().mapToLong(Long::longValue).toArray(), entries, volume, range, attenuationType,
+                boundingBoxEnabled, startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove);
+    }
+
+    // 既にソート・重複除去済み (1 ホームだけ、または昇順で選んだ場合) ならそのまま共有する
+    private static long[] sortedDistinct(long[] ids) {
+        boolean sorted = true;
+        for (int i = 1; i < ids.length && sorted; i++) {
+            sorted = ids[i - 1] < ids[i];
+        }
+        if (sorted) return ids;
+        long[] watched = ids.clone();
+        Arrays.sort(watched);
+        int size = 1;
+        for (int i = 1; i < watched.length; i++) {
+            if (watched[i] != watched[size - 1]) watched[size++] = watched[i];
+        }
+        return size == watched.length ? watched : Arrays.copyOf(watched, size);
+    }
+
+    private static String canonical(String value, String defaultValue, String other) {
+        if (other.equals(value)) return other;
+        if (value == null || defaultValue.equals(value)) return defaultValue;
+        return value;
+    }
+
+    /**
+     * Selected platforms in the order the player chose them. Shared; do not modify.
+     */
+    public long[] getPlatformIds() {
+        return platformIds;
+    }
+
+    /**
+     * The selected platforms sorted and without duplicates. Shared; do not modify.
+     */
+    public long[] getWatchedPlatformIds() {
+        return watchedPlatformIds;
+    }
+
+    /**
+     * A boxed copy of {@link #getPlatformIds} for GUI code.
+     */
+    public List<Long> getPlatformIdList() {
+        List<Long> list = new ArrayList<>(platformIds.length);
+        for (long id : platformIds) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    /**
+     * {@link #DEFAULT} if this equals it, otherwise this. Lets tiles read back from NBT share the default again.
+     */
+    public AnnounceConfig shared() {
+        return equals(DEFAULT) ? DEFAULT : this;
+    }
+
+    public boolean usesTemplate() {
+        return templateId != NO_TEMPLATE;
+    }
+
+    /**
+     * This configuration with the values edited on the platform selection screen replaced.
+     * A template reference is kept, and {@code entries} are then ignored.
+     */
+    public AnnounceConfig withSchedule(int seconds, List<Long> platformIds, List<AnnouncementEntry> entries) {
+        return new AnnounceConfig(seconds, platformIds.stream().mapToLong(Long::longValue).toArray(), entries, volume, range,
+                attenuationType, boundingBoxEnabled, startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode,
+                excludePlayersAbove, templateId);
+    }
+
+    public AnnounceConfig withPlatformIds(List<Long> platformIds) {
+        return withSchedule(seconds, platformIds, entries);
+    }
+
+    /**
+     * This configuration with its own entries. Editing the entries detaches it from its template.
+     */
+    public AnnounceConfig withEntries(List<AnnouncementEntry> entries) {
+        return new AnnounceConfig(seconds, platformIds, entries, volume, range, attenuationType, boundingBoxEnabled,
+                startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove, NO_TEMPLATE);
+    }
+
+    /**
+     * This configuration referencing the shared template {@code templateId} instead of its own entries.
+     */
+    public AnnounceConfig withTemplate(int templateId) {
+        return new AnnounceConfig(seconds, platformIds, entries, volume, range, attenuationType, boundingBoxEnabled,
+                startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove, templateId);
+    }
+
+    public AnnounceConfig withTriggerMode(String triggerMode) {
+        return new AnnounceConfig(seconds, platformIds, entries, volume, range, attenuationType, boundingBoxEnabled,
+                startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove, templateId);
+    }
+
+    /**
+     * The {@link AnnounceConfigSync} field bits whose values differ between this and {@code other}.
+     */
+    public int diff(AnnounceConfig other) {
+        if (this == other) return 0;
+        int fields = 0;
+        if (seconds != other.seconds) fields |= FIELD_SECONDS;
+        if (!Arrays.equals(platformIds, other.platformIds)) fields |= FIELD_PLATFORMS;
+        if (!entries.equals(other.entries)) fields |= FIELD_ENTRIES;
+        if (volume != other.volume) fields |= FIELD_VOLUME;
+        if (range != other.range) fields |= FIELD_RANGE;
+        if (!attenuationType.equals(other.attenuationType)) fields |= FIELD_ATTENUATION;
+        if (boundingBoxEnabled != other.boundingBoxEnabled) fields |= FIELD_BOUNDING_BOX_ENABLED;
+        if (startX != other.startX) fields |= FIELD_START_X;
+        if (startY != other.startY) fields |= FIELD_START_Y;
+        if (startZ != other.startZ) fields |= FIELD_START_Z;
+        if (endX != other.endX) fields |= FIELD_END_X;
+        if (endY != other.endY) fields |= FIELD_END_Y;
+        if (endZ != other.endZ) fields |= FIELD_END_Z;
+        if (!triggerMode.equals(other.triggerMode)) fields |= FIELD_TRIGGER_MODE;
+        if (repeatMode != other.repeatMode) fields |= FIELD_REPEAT_MODE;
+        if (excludePlayersAbove != other.excludePlayersAbove) fields |= FIELD_EXCLUDE_PLAYERS_ABOVE;
+        if (templateId != other.templateId) fields |= FIELD_TEMPLATE;
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        return obj instanceof AnnounceConfig other && diff(other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seconds, Arrays.hashCode(platformIds), entries, volume, range, attenuationType, boundingBoxEnabled,
+                startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove, templateId);
+    }
+}
@@ -0,0 +1,58 @@
+package com.botamochi.easyannouncement.data;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * サーバー全体で共有する放送テンプレート (不変)。
+ * A named announcement sequence that any number of announcers reference by {@link #id}. Saving a template
+ * under an existing name keeps its id and bumps {@link #version}, so every announcer using it plays the new
+ * sequence from its next announcement on.
+ */
+public final class AnnounceTemplate {
+    public final int id;
+    public final String name;
+    public final int version;
+    public final List<AnnouncementEntry> entries;
+
+    public AnnounceTemplate(int id, String name, int version, List<AnnouncementEntry> entries) {
+        this.id = id;
+        this.name = name;
+        this.version = version;
+        this.entries = List.copyOf(entries.size() > AnnounceConfig.MAX_ENTRIES ? entries.subList(0, AnnounceConfig.MAX_ENTRIES) : entries);
+    }
+
+    /**
+     * The next version of this template with {@code entries}.
+     */
+    public AnnounceTemplate withEntries(List<AnnouncementEntry> entries) {
+        return new AnnounceTemplate(id, name, version + 1, entries);
+    }
+
+    public NbtCompound writeNbt(NbtCompound nbt) {
+        nbt.putInt("Id", id);
+        nbt.putString("Name", name);
+        nbt.putInt("Version", version);
+        NbtList entriesList = new NbtList();
+        for (AnnouncementEntry entry : entries) {
+            NbtCompound entryNbt = new NbtCompound();
+            entry.writeNbt(entryNbt);
+            entriesList.add(entryNbt);
+        }
+        nbt.put("Entries", entriesList);
+        return nbt;
+    }
+
+    public static AnnounceTemplate fromNbt(NbtCompound nbt) {
+        NbtList entriesList = nbt.getList("Entries", NbtElement.COMPOUND_TYPE);
+        List<AnnouncementEntry> entries = new ArrayList<>(entriesList.size());
+        for (int i = 0; i < entriesList.size(); i++) {
+            entries.add(AnnouncementEntry.fromNbt(entriesList.getCompound(i)));
+        }
+        return new AnnounceTemplate(nbt.getInt("Id"), nbt.getString("Name"), nbt.getInt("Version"), entries);
+    }
+}
@@ -4,15 +4,12 @@ import net.minecraft.nbt.NbtCompound;
 
 /**
  * Represents a single JSON announcement entry with timing
- * Used for multi-JSON announcement sequences
+ * Used for multi-JSON announcement sequences.
+ * Immutable, so configs and templates can share their entry lists; use the {@code with*} methods to edit.
  */
-public class AnnouncementEntry {
-    private String jsonName;
-    private int delaySeconds;
-    
-    public AnnouncementEntry() {
-        this("", 0);
-    }
+public final class AnnouncementEntry {
+    private final String jsonName;
+    private final int delaySeconds;
     
     public AnnouncementEntry(String jsonName, int delaySeconds) {
         this.jsonName = jsonName;
@@ -23,16 +20,16 @@ public class AnnouncementEntry {
         return jsonName;
     }
     
-    public void setJsonName(String jsonName) {
-        this.jsonName = jsonName;
+    public AnnouncementEntry withJsonName(String jsonName) {
+        return new AnnouncementEntry(jsonName, delaySeconds);
     }
     
     public int getDelaySeconds() {
         return delaySeconds;
     }
     
-    public void setDelaySeconds(int delaySeconds) {
-        this.delaySeconds = delaySeconds;
+    public AnnouncementEntry withDelaySeconds(int delaySeconds) {
+        return new AnnouncementEntry(jsonName, delaySeconds);
     }
     
     public boolean isEmpty() {
@@ -44,13 +41,8 @@ public class AnnouncementEntry {
         nbt.putInt("DelaySeconds", delaySeconds);
     }
     
-    public void readNbt(NbtCompound nbt) {
-        this.jsonName = nbt.getString("JsonName");
-        this.delaySeconds = nbt.getInt("DelaySeconds");
-    }
-    
-    public AnnouncementEntry copy() {
-        return new AnnouncementEntry(this.jsonName, this.delaySeconds);
+    public static AnnouncementEntry fromNbt(NbtCompound nbt) {
+        return new AnnouncementEntry(nbt.getString("JsonName"), nbt.getInt("DelaySeconds"));
     }
     
     @Override
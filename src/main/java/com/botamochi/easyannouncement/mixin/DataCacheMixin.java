@@ -0,0 +1,22 @@
+package com.botamochi.easyannouncement.mixin;
+
+import com.botamochi.easyannouncement.schedule.RouteTokenCache;
+import mtr.data.DataCache;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * MTR の DataCache が再構築されたら行先・種別トークンのキャッシュを捨てる。
+ * The injection uses the config's {@code defaultRequire}, so a renamed or inlined {@code sync} fails at load
+ * time instead of leaving stale destinations cached until restart.
+ */
+@Mixin(value = DataCache.class, remap = false)
+public abstract class DataCacheMixin {
+
+    @Inject(method = "sync", at = @At("TAIL"))
+    private void easyannouncement$onSync(CallbackInfo ci) {
+        RouteTokenCache.invalidate();
+    }
+}
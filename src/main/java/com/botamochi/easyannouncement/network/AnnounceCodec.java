@@ -0,0 +1,338 @@
+package com.botamochi.easyannouncement.network;
+
+import com.botamochi.easyannouncement.data.AnnounceConfig;
+import com.botamochi.easyannouncement.data.AnnounceTemplate;
+import com.botamochi.easyannouncement.data.AnnouncementEntry;
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.botamochi.easyannouncement.network.AnnounceConfigSync.*;
+
+/**
+ * パケットのエンコード/デコード (プロトコル v{@value #VERSION})。
+ * The single encoder/decoder pair shared by server and client for every EasyAnnouncement packet.
+ * The layout is fixed by the protocol version agreed in {@link AnnounceProtocol}'s handshake, so nothing is
+ * guessed from {@code readableBytes()}: counts and small ints are VarInts, signed values (coordinates,
+ * {@code -1} sentinels) are zigzag VarInts. MTR platform and route IDs are random 64-bit hashes and stay
+ * fixed-width, as a VarLong would only make them longer.
+ * Strings keep the vanilla length limit: destinations and entry names come from MTR and old NBT, and a tighter
+ * limit would make encoding throw on the server thread. Counts are capped by {@link AnnounceConfig} itself.
+ */
+public final class AnnounceCodec {
+    public static final int VERSION = 3;
+
+    private AnnounceCodec() {
+    }
+
+    // ---- announce_update (both directions): the full configuration of one announcer ----
+
+    public static void writeConfig(PacketByteBuf buf, BlockPos pos, AnnounceConfig config, int revision) {
+        writeConfig(buf, pos, config, null, revision);
+    }
+
+    /**
+     * {@code template} is the shared template {@code config} references, sent along (server -> client only) so
+     * the screen can show its sequence; {@code null} if there is none or it no longer exists.
+     */
+    public static void writeConfig(PacketByteBuf buf, BlockPos pos, AnnounceConfig config, AnnounceTemplate template, int revision) {
+        buf.writeBlockPos(pos);
+        writeSignedVarInt(buf, config.seconds);
+        writeIds(buf, config.getPlatformIds());
+        writeEntries(buf, config.entries);
+        buf.writeVarInt(config.templateId);
+        if (config.usesTemplate()) {
+            buf.writeBoolean(template != null);
+            if (template != null) {
+                buf.writeString(template.name);
+                buf.writeVarInt(template.version);
+                writeEntries(buf, template.entries);
+            }
+        }
+        buf.writeFloat(config.volume);
+        buf.writeVarInt(config.range);
+        buf.writeString(config.attenuationType);
+        buf.writeBoolean(config.boundingBoxEnabled);
+        writeSignedVarInt(buf, config.startX);
+        writeSignedVarInt(buf, config.startY);
+        writeSignedVarInt(buf, config.startZ);
+        writeSignedVarInt(buf, config.endX);
+        writeSignedVarInt(buf, config.endY);
+        writeSignedVarInt(buf, config.endZ);
+        buf.writeString(config.triggerMode);
+        buf.writeBoolean(config.repeatMode);
+        buf.writeBoolean(config.excludePlayersAbove);
+        writeSignedVarInt(buf, revision);
+    }
+
+    public static Update readConfig(PacketByteBuf buf) {
+        BlockPos pos = buf.readBlockPos();
+        int seconds = readSignedVarInt(buf);
+        long[] platformIds = readIds(buf);
+        List<AnnouncementEntry> entries = readEntries(buf);
+        int templateId = buf.readVarInt();
+        AnnounceTemplate template = null;
+        if (templateId != AnnounceConfig.NO_TEMPLATE && buf.readBoolean()) {
+            template = new AnnounceTemplate(templateId, buf.readString(), buf.readVarInt(), readEntries(buf));
+        }
+        AnnounceConfig config = new AnnounceConfig(seconds, platformIds, entries,
+                buf.readFloat(), buf.readVarInt(), buf.readString(), buf.readBoolean(),
+                readSignedVarInt(buf), readSignedVarInt(buf), readSignedVarInt(buf),
+                readSignedVarInt(buf), readSignedVarInt(buf), readSignedVarInt(buf),
+                buf.readString(), buf.readBoolean(), buf.readBoolean(), templateId);
+        return new Update(pos, config, template, readSignedVarInt(buf));
+    }
+
+    // ---- announce_delta (server -> client): changed fields only ----
+
+    public static void writeDelta(PacketByteBuf buf, AnnounceTile tile, int fields, int revision) {
+        AnnounceConfig config = tile.getConfig();
+        buf.writeBlockPos(tile.getPos());
+        buf.writeVarInt(revision);
+        buf.writeVarInt(fields);
+        if ((fields & FIELD_SECONDS) != 0) writeSignedVarInt(buf, config.seconds);
+        if ((fields & FIELD_PLATFORMS) != 0) writeIds(buf, config.getPlatformIds());
+        if ((fields & FIELD_ENTRIES) != 0) writeEntries(buf, config.entries);
+        if ((fields & FIELD_VOLUME) != 0) buf.writeFloat(config.volume);
+        if ((fields & FIELD_RANGE) != 0) buf.writeVarInt(config.range);
+        if ((fields & FIELD_ATTENUATION) != 0) buf.writeString(config.attenuationType);
+        if ((fields & FIELD_BOUNDING_BOX_ENABLED) != 0) buf.writeBoolean(config.boundingBoxEnabled);
+        if ((fields & FIELD_START_X) != 0) writeSignedVarInt(buf, config.startX);
+        if ((fields & FIELD_START_Y) != 0) writeSignedVarInt(buf, config.startY);
+        if ((fields & FIELD_START_Z) != 0) writeSignedVarInt(buf, config.startZ);
+        if ((fields & FIELD_END_X) != 0) writeSignedVarInt(buf, config.endX);
+        if ((fields & FIELD_END_Y) != 0) writeSignedVarInt(buf, config.endY);
+        if ((fields & FIELD_END_Z) != 0) writeSignedVarInt(buf, config.endZ);
+        if ((fields & FIELD_TRIGGER_MODE) != 0) buf.writeString(config.triggerMode);
+        if ((fields & FIELD_REPEAT_MODE) != 0) buf.writeBoolean(config.repeatMode);
+        if ((fields & FIELD_EXCLUDE_PLAYERS_ABOVE) != 0) buf.writeBoolean(config.excludePlayersAbove);
+        if ((fields & FIELD_TEMPLATE) != 0) buf.writeVarInt(config.templateId);
+    }
+
+    public static Delta readDelta(PacketByteBuf buf) {
+        Delta delta = new Delta(buf.readBlockPos(), buf.readVarInt(), buf.readVarInt());
+        int fields = delta.fields;
+        if ((fields & FIELD_SECONDS) != 0) delta.seconds = readSignedVarInt(buf);
+        if ((fields & FIELD_PLATFORMS) != 0) delta.platformIds = readIds(buf);
+        if ((fields & FIELD_ENTRIES) != 0) delta.entries = readEntries(buf);
+        if ((fields & FIELD_VOLUME) != 0) delta.volume = buf.readFloat();
+        if ((fields & FIELD_RANGE) != 0) delta.range = buf.readVarInt();
+        if ((fields & FIELD_ATTENUATION) != 0) delta.attenuationType = buf.readString();
+        if ((fields & FIELD_BOUNDING_BOX_ENABLED) != 0) delta.boundingBoxEnabled = buf.readBoolean();
+        if ((fields & FIELD_START_X) != 0) delta.startX = readSignedVarInt(buf);
+        if ((fields & FIELD_START_Y) != 0) delta.startY = readSignedVarInt(buf);
+        if ((fields & FIELD_START_Z) != 0) delta.startZ = readSignedVarInt(buf);
+        if ((fields & FIELD_END_X) != 0) delta.endX = readSignedVarInt(buf);
+        if ((fields & FIELD_END_Y) != 0) delta.endY = readSignedVarInt(buf);
+        if ((fields & FIELD_END_Z) != 0) delta.endZ = readSignedVarInt(buf);
+        if ((fields & FIELD_TRIGGER_MODE) != 0) delta.triggerMode = buf.readString();
+        if ((fields & FIELD_REPEAT_MODE) != 0) delta.repeatMode = buf.readBoolean();
+        if ((fields & FIELD_EXCLUDE_PLAYERS_ABOVE) != 0) delta.excludePlayersAbove = buf.readBoolean();
+        if ((fields & FIELD_TEMPLATE) != 0) delta.templateId = buf.readVarInt();
+        return delta;
+    }
+
+    // ---- announce_start (server -> client) ----
+
+    public static void writeStart(PacketByteBuf buf, BlockPos pos, long[] platformIds, List<AnnouncementEntry> entries,
+                                  String destination, String routeType, String hh, String mm,
+                                  long chosenPlatformId, long chosenRouteId, int chosenCurrentStationIndex) {
+        buf.writeBlockPos(pos);
+        writeIds(buf, platformIds);
+        writeEntries(buf, entries);
+        buf.writeString(destination);
+        buf.writeString(routeType);
+        buf.writeString(hh);
+        buf.writeString(mm);
+        buf.writeLong(chosenPlatformId);
+        buf.writeLong(chosenRouteId);
+        writeSignedVarInt(buf, chosenCurrentStationIndex);
+    }
+
+    public static Start readStart(PacketByteBuf buf) {
+        return new Start(buf.readBlockPos(), toList(readIds(buf)), readEntries(buf),
+                buf.readString(), buf.readString(),
+                buf.readString(), buf.readString(),
+                buf.readLong(), buf.readLong(), readSignedVarInt(buf));
+    }
+
+    // ---- announcement_finished / announce_full_request (client -> server): position only ----
+
+    public static void writePos(PacketByteBuf buf, BlockPos pos) {
+        buf.writeBlockPos(pos);
+    }
+
+    public static BlockPos readPos(PacketByteBuf buf) {
+        return buf.readBlockPos();
+    }
+
+    // ---- primitives ----
+
+    private static void writeIds(PacketByteBuf buf, long[] ids) {
+        buf.writeVarInt(ids.length);
+        for (long id : ids) {
+            buf.writeLong(id);
+        }
+    }
+
+    private static long[] readIds(PacketByteBuf buf) {
+        int count = buf.readVarInt();
+        if (count < 0 || count > AnnounceConfig.MAX_PLATFORMS) {
+            throw new IllegalArgumentException("Too many platforms: " + count);
+        }
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = buf.readLong();
+        }
+        return ids;
+    }
+
+    private static List<Long> toList(long[] ids) {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static void writeEntries(PacketByteBuf buf, List<AnnouncementEntry> entries) {
+        buf.writeVarInt(entries.size());
+        for (AnnouncementEntry entry : entries) {
+            buf.writeString(entry.getJsonName());
+            writeSignedVarInt(buf, entry.getDelaySeconds());
+        }
+    }
+
+    private static List<AnnouncementEntry> readEntries(PacketByteBuf buf) {
+        int count = buf.readVarInt();
+        if (count < 0 || count > AnnounceConfig.MAX_ENTRIES) {
+            throw new IllegalArgumentException("Too many announcement entries: " + count);
+        }
+        List<AnnouncementEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new AnnouncementEntry(buf.readString(), readSignedVarInt(buf)));
+        }
+        return entries;
+    }
+
+    // 負の値 (座標や -1) も短くなるように zigzag してから VarInt で書く
+    private static void writeSignedVarInt(PacketByteBuf buf, int value) {
+        buf.writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    private static int readSignedVarInt(PacketByteBuf buf) {
+        int raw = buf.readVarInt();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * A decoded announce_update: the full configuration of one announcer.
+     * {@code revision} is the server's sync revision; clients send 0. {@code template} is the referenced shared
+     * template as the server sent it (read-only, for display), or {@code null}.
+     */
+    public static final class Update {
+        public final BlockPos pos;
+        public final AnnounceConfig config;
+        public final AnnounceTemplate template;
+        public final int revision;
+
+        private Update(BlockPos pos, AnnounceConfig config, AnnounceTemplate template, int revision) {
+            this.pos = pos;
+            this.config = config;
+            this.template = template;
+            this.revision = revision;
+        }
+
+        public void applyTo(AnnounceTile tile) {
+            tile.applyConfig(config);
+        }
+    }
+
+    /**
+     * A decoded announce_delta. Read on the network thread, applied on the client thread.
+     */
+    public static final class Delta {
+        public final BlockPos pos;
+        public final int revision;
+        public final int fields;
+        private int seconds;
+        private long[] platformIds;
+        private List<AnnouncementEntry> entries;
+        private float volume;
+        private int range;
+        private String attenuationType;
+        private boolean boundingBoxEnabled;
+        private int startX, startY, startZ, endX, endY, endZ;
+        private String triggerMode;
+        private boolean repeatMode;
+        private boolean excludePlayersAbove;
+        private int templateId;
+
+        private Delta(BlockPos pos, int revision, int fields) {
+            this.pos = pos;
+            this.revision = revision;
+            this.fields = fields;
+        }
+
+        // 受け取っていないフィールドは現在の値のまま、まとめて一度に適用する
+        public void applyTo(AnnounceTile tile) {
+            AnnounceConfig current = tile.getConfig();
+            tile.applyConfig(new AnnounceConfig(
+                    has(FIELD_SECONDS) ? seconds : current.seconds,
+                    has(FIELD_PLATFORMS) ? platformIds : current.getPlatformIds(),
+                    has(FIELD_ENTRIES) ? entries : current.entries,
+                    has(FIELD_VOLUME) ? volume : current.volume,
+                    has(FIELD_RANGE) ? range : current.range,
+                    has(FIELD_ATTENUATION) ? attenuationType : current.attenuationType,
+                    has(FIELD_BOUNDING_BOX_ENABLED) ? boundingBoxEnabled : current.boundingBoxEnabled,
+                    has(FIELD_START_X) ? startX : current.startX,
+                    has(FIELD_START_Y) ? startY : current.startY,
+                    has(FIELD_START_Z) ? startZ : current.startZ,
+                    has(FIELD_END_X) ? endX : current.endX,
+                    has(FIELD_END_Y) ? endY : current.endY,
+                    has(FIELD_END_Z) ? endZ : current.endZ,
+                    has(FIELD_TRIGGER_MODE) ? triggerMode : current.triggerMode,
+                    has(FIELD_REPEAT_MODE) ? repeatMode : current.repeatMode,
+                    has(FIELD_EXCLUDE_PLAYERS_ABOVE) ? excludePlayersAbove : current.excludePlayersAbove,
+                    has(FIELD_TEMPLATE) ? templateId : current.templateId));
+        }
+
+        private boolean has(int field) {
+            return (fields & field) != 0;
+        }
+    }
+
+    /**
+     * A decoded announce_start.
+     */
+    public static final class Start {
+        public final BlockPos pos;
+        public final List<Long> platformIds;
+        public final List<AnnouncementEntry> entries;
+        public final String destination;
+        public final String routeType;
+        public final String hh;
+        public final String mm;
+        public final long chosenPlatformId;
+        public final long chosenRouteId;
+        public final int chosenCurrentStationIndex;
+
+        private Start(BlockPos pos, List<Long> platformIds, List<AnnouncementEntry> entries,
+                      String destination, String routeType, String hh, String mm,
+                      long chosenPlatformId, long chosenRouteId, int chosenCurrentStationIndex) {
+            this.pos = pos;
+            this.platformIds = platformIds;
+            this.entries = entries;
+            this.destination = destination;
+            this.routeType = routeType;
+            this.hh = hh;
+            this.mm = mm;
+            this.chosenPlatformId = chosenPlatformId;
+            this.chosenRouteId = chosenRouteId;
+            this.chosenCurrentStationIndex = chosenCurrentStationIndex;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.botamochi.easyannouncement.network;
+
+import com.botamochi.easyannouncement.Easyannouncement;
+import com.botamochi.easyannouncement.screen.MainScreenHandler;
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.Packet;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * 設定の差分同期 (announce_delta)。
+ * World state reaches chunk watchers through the vanilla block-entity update; this channel only keeps an open
+ * screen current. After the full snapshot sent on opening (announce_update), config changes are sent as a field
+ * bitmask plus only the changed values. Every delta carries the tile's sync revision; a client that sees a gap, or a tile it holds
+ * no revision for, asks for a full snapshot with {@link #FULL_REQUEST_ID}. Encoding lives in {@link AnnounceCodec}.
+ */
+public class AnnounceConfigSync {
+    public static final Identifier DELTA_ID = new Identifier(Easyannouncement.MOD_ID, "announce_delta");
+    public static final Identifier FULL_REQUEST_ID = new Identifier(Easyannouncement.MOD_ID, "announce_full_request");
+
+    public static final int FIELD_SECONDS = 1;
+    public static final int FIELD_PLATFORMS = 1 << 1;
+    public static final int FIELD_ENTRIES = 1 << 2;
+    public static final int FIELD_VOLUME = 1 << 3;
+    public static final int FIELD_RANGE = 1 << 4;
+    public static final int FIELD_ATTENUATION = 1 << 5;
+    public static final int FIELD_BOUNDING_BOX_ENABLED = 1 << 6;
+    public static final int FIELD_START_X = 1 << 7;
+    public static final int FIELD_START_Y = 1 << 8;
+    public static final int FIELD_START_Z = 1 << 9;
+    public static final int FIELD_END_X = 1 << 10;
+    public static final int FIELD_END_Y = 1 << 11;
+    public static final int FIELD_END_Z = 1 << 12;
+    public static final int FIELD_TRIGGER_MODE = 1 << 13;
+    public static final int FIELD_REPEAT_MODE = 1 << 14;
+    public static final int FIELD_EXCLUDE_PLAYERS_ABOVE = 1 << 15;
+    public static final int FIELD_TEMPLATE = 1 << 16;
+    public static final int FIELD_ALL = (1 << 17) - 1;
+
+    /**
+     * Encodes the given fields of a tile together with its new revision.
+     */
+    public static Packet<?> createDeltaPacket(AnnounceTile tile, int fields, int revision) {
+        PacketByteBuf buf = PacketByteBufs.create();
+        AnnounceCodec.writeDelta(buf, tile, fields, revision);
+        return ServerPlayNetworking.createS2CPacket(DELTA_ID, buf);
+    }
+
+    /**
+     * Answers full-snapshot requests from clients that lost track of a tile's revision.
+     */
+    public static void register() {
+        ServerPlayNetworking.registerGlobalReceiver(FULL_REQUEST_ID, (server, player, handler, buf, sender) -> {
+            BlockPos pos = AnnounceCodec.readPos(buf);
+            server.execute(() -> {
+                ServerWorld world = player.getWorld();
+                if (!world.isChunkLoaded(pos.getX() >> 4, pos.getZ() >> 4)) return;
+                if (!(world.getBlockEntity(pos) instanceof AnnounceTile tile)) return;
+                // 追跡していないタイルや開いていない画面の分は返さない
+                boolean screenOpen = player.currentScreenHandler instanceof MainScreenHandler screenHandler
+                        && screenHandler.getBlockEntity() == tile;
+                if (AnnounceProtocol.isVerified(player) && (screenOpen || PlayerLookup.tracking(tile).contains(player))) {
+                    player.networkHandler.sendPacket(tile.createUpdatePacket());
+                }
+            });
+        });
+    }
+}
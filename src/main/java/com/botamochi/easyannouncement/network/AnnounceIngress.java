@@ -0,0 +1,149 @@
+package com.botamochi.easyannouncement.network;
+
+import com.botamochi.easyannouncement.Easyannouncement;
+import com.botamochi.easyannouncement.config.EAConfig;
+import com.botamochi.easyannouncement.data.AnnounceConfig;
+import com.botamochi.easyannouncement.data.AnnouncementEntry;
+import com.botamochi.easyannouncement.screen.MainScreenHandler;
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * クライアントから届いた設定 (announce_update) の受け口。
+ * Runs on the network thread: each packet is validated, charged against the sender's token bucket and parked
+ * in a per-tile slot, where a newer packet for the same tile simply replaces the older one. The server thread
+ * drains the slots once at the start of every tick and applies each surviving update after checking that the
+ * player may still edit the tile. A client spamming saves therefore costs at most one apply per tile per tick
+ * and never queues work onto the server thread directly.
+ */
+public class AnnounceIngress {
+    private static final int MAX_SECONDS = 24 * 60 * 60;
+    private static final int MAX_COORDINATE = 30_000_000;
+    // パケットの文字列は vanilla の上限のままなので、プレイヤーが送るエントリ名はここで絞る
+    private static final int MAX_ENTRY_NAME_LENGTH = 256;
+
+    private static final Map<UUID, TokenBucket> BUCKETS = new ConcurrentHashMap<>();
+    private static final Map<Key, Pending> PENDING = new ConcurrentHashMap<>();
+
+    /**
+     * Accepts a decoded update from {@code player}. Called on the network thread.
+     */
+    public static void offer(ServerPlayerEntity player, AnnounceCodec.Update update) {
+        if (!isValid(update.config)) {
+            Easyannouncement.LOGGER.debug("[EasyAnnouncement] Rejected invalid config from {} at {}", player.getName().getString(), update.pos);
+            return;
+        }
+        Key key = new Key(player.getWorld().getRegistryKey(), update.pos.asLong());
+        Pending pending = new Pending(player, update);
+        // 同じプレイヤーが同じタイルに送った未適用の更新を上書きするだけならトークンは使わない
+        Pending previous = PENDING.computeIfPresent(key, (k, old) -> old.player == player ? pending : old);
+        if (previous == pending) return;
+
+        TokenBucket bucket = BUCKETS.computeIfAbsent(player.getUuid(), uuid -> new TokenBucket());
+        if (!bucket.tryTake()) {
+            Easyannouncement.LOGGER.debug("[EasyAnnouncement] Dropped config update from {}: rate limit", player.getName().getString());
+            return;
+        }
+        // 後から届いた方が勝つ
+        PENDING.put(key, pending);
+    }
+
+    /**
+     * Applies the updates parked since the previous tick. Run at the start of every server tick.
+     */
+    public static void drain(MinecraftServer server) {
+        if (PENDING.isEmpty()) return;
+        for (Key key : PENDING.keySet()) {
+            Pending pending = PENDING.remove(key);
+            if (pending != null) {
+                apply(server, key, pending);
+            }
+        }
+    }
+
+    private static void apply(MinecraftServer server, Key key, Pending pending) {
+        ServerPlayerEntity player = pending.player;
+        if (player.isDisconnected() || player.getWorld().getRegistryKey() != key.world) return;
+        ServerWorld world = server.getWorld(key.world);
+        if (world == null) return;
+        BlockPos pos = pending.update.pos;
+        if (!world.isChunkLoaded(pos.getX() >> 4, pos.getZ() >> 4)) return;
+        if (!(world.getBlockEntity(pos) instanceof AnnounceTile tile)) return;
+        if (!MainScreenHandler.canEdit(player, tile)) {
+            Easyannouncement.LOGGER.debug("[EasyAnnouncement] {} may not edit the announcer at {}", player.getName().getString(), pos);
+            return;
+        }
+        // テンプレートの割り当てはコマンドだけ。GUI からは今のテンプレートを保つか外すかしかできない
+        int templateId = pending.update.config.templateId;
+        if (templateId != AnnounceConfig.NO_TEMPLATE && templateId != tile.getConfig().templateId) {
+            Easyannouncement.LOGGER.debug("[EasyAnnouncement] {} tried to assign template {} at {}", player.getName().getString(), templateId, pos);
+            return;
+        }
+        // 変更があれば一度だけ dirty・同期・再スケジュールされる
+        pending.update.applyTo(tile);
+    }
+
+    public static void remove(ServerPlayerEntity player) {
+        BUCKETS.remove(player.getUuid());
+        PENDING.values().removeIf(pending -> pending.player == player);
+    }
+
+    public static void clear() {
+        BUCKETS.clear();
+        PENDING.clear();
+    }
+
+    /**
+     * Cheap checks that need no world access. Values the tile clamps anyway (volume, range) only have to be finite.
+     */
+    private static boolean isValid(AnnounceConfig config) {
+        if (Math.abs(config.seconds) > MAX_SECONDS) return false;
+        if (!Float.isFinite(config.volume)) return false;
+        if (!AnnounceConfig.ATTENUATION_LINEAR.equals(config.attenuationType)
+                && !AnnounceConfig.ATTENUATION_NONE.equals(config.attenuationType)) return false;
+        if (!AnnounceConfig.TRIGGER_MODE_EXACT.equals(config.triggerMode)
+                && !AnnounceConfig.TRIGGER_MODE_CROSSING.equals(config.triggerMode)) return false;
+        if (!isCoordinate(config.startX) || !isCoordinate(config.startY) || !isCoordinate(config.startZ)
+                || !isCoordinate(config.endX) || !isCoordinate(config.endY) || !isCoordinate(config.endZ)) return false;
+        for (AnnouncementEntry entry : config.entries) {
+            if (entry.getDelaySeconds() < 0 || entry.getDelaySeconds() > MAX_SECONDS) return false;
+            if (entry.getJsonName() == null || entry.getJsonName().length() > MAX_ENTRY_NAME_LENGTH) return false;
+        }
+        return true;
+    }
+
+    private static boolean isCoordinate(int value) {
+        return value >= -MAX_COORDINATE && value <= MAX_COORDINATE;
+    }
+
+    private record Key(RegistryKey<World> world, long pos) {
+    }
+
+    private record Pending(ServerPlayerEntity player, AnnounceCodec.Update update) {
+    }
+
+    // プレイヤーごとのトークンバケット。パケットはそのプレイヤーのネットワークスレッドから届く
+    private static final class TokenBucket {
+        private double tokens = EAConfig.get().configUpdateBurst;
+        private long lastRefillNanos = System.nanoTime();
+
+        synchronized boolean tryTake() {
+            EAConfig config = EAConfig.get();
+            long now = System.nanoTime();
+            tokens = Math.min(config.configUpdateBurst, tokens + (now - lastRefillNanos) * config.configUpdatesPerSecond / 1e9);
+            lastRefillNanos = now;
+            if (tokens < 1.0) return false;
+            tokens -= 1.0;
+            return true;
+        }
+    }
+}
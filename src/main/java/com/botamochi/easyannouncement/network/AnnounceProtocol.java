@@ -0,0 +1,84 @@
+package com.botamochi.easyannouncement.network;
+
+import com.botamochi.easyannouncement.Easyannouncement;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.S2CPlayChannelEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 参加時のプロトコルバージョン交換。
+ * When a joining client registers the hello channel, the server sends its {@link AnnounceCodec#VERSION};
+ * the client answers with its own. A client speaking another version is disconnected with an explanation
+ * instead of misreading packets later. Clients from before the handshake existed register the announce
+ * channels but not hello, and are disconnected the same way. Players without the mod never receive the
+ * hello, as they did not register the channel.
+ * <p>
+ * announce_* packets are only sent to players whose hello matched ({@link #isVerified}).
+ */
+public class AnnounceProtocol {
+    public static final Identifier HELLO_ID = new Identifier(Easyannouncement.MOD_ID, "hello");
+
+    // バージョンが一致したプレイヤー (ネットワークスレッドから追加される)
+    private static final Set<UUID> VERIFIED = ConcurrentHashMap.newKeySet();
+
+    public static void register() {
+        // クライアントがチャンネルを登録した時点で送る (JOIN 直後はまだ登録が届いていないことがある)
+        S2CPlayChannelEvents.REGISTER.register((handler, sender, server, channels) -> {
+            if (channels.contains(HELLO_ID)) {
+                sender.sendPacket(HELLO_ID, createHello());
+            } else if (!ServerPlayNetworking.canSend(handler, HELLO_ID) && registersAnnounceChannel(channels)) {
+                // hello を知らない古いクライアント
+                Easyannouncement.LOGGER.warn("[EasyAnnouncement] {} uses a client without the protocol handshake, server uses v{}",
+                        handler.player.getName().getString(), AnnounceCodec.VERSION);
+                server.execute(() -> handler.disconnect(Text.literal("EasyAnnouncement version mismatch: server protocol v"
+                        + AnnounceCodec.VERSION + ", your client is older. Please install the same version as the server.")));
+            }
+        });
+
+        ServerPlayNetworking.registerGlobalReceiver(HELLO_ID, (server, player, handler, buf, sender) -> {
+            int version = buf.readVarInt();
+            if (version == AnnounceCodec.VERSION) {
+                VERIFIED.add(player.getUuid());
+                return;
+            }
+            Easyannouncement.LOGGER.warn("[EasyAnnouncement] {} uses protocol v{}, server uses v{}",
+                    player.getName().getString(), version, AnnounceCodec.VERSION);
+            server.execute(() -> handler.disconnect(Text.literal("EasyAnnouncement version mismatch: server protocol v"
+                    + AnnounceCodec.VERSION + ", client protocol v" + version + ". Please install the same version as the server.")));
+        });
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> VERIFIED.remove(handler.player.getUuid()));
+    }
+
+    /**
+     * Whether {@code player} completed the handshake with this protocol version and may receive announce_* packets.
+     */
+    public static boolean isVerified(ServerPlayerEntity player) {
+        return VERIFIED.contains(player.getUuid());
+    }
+
+    public static void clear() {
+        VERIFIED.clear();
+    }
+
+    private static boolean registersAnnounceChannel(List<Identifier> channels) {
+        return channels.contains(AnnounceSendToClient.ID) || channels.contains(AnnounceSendToClient.ANNOUNCE_START_ID)
+                || channels.contains(AnnounceConfigSync.DELTA_ID);
+    }
+
+    public static PacketByteBuf createHello() {
+        PacketByteBuf buf = PacketByteBufs.create();
+        buf.writeVarInt(AnnounceCodec.VERSION);
+        return buf;
+    }
+}
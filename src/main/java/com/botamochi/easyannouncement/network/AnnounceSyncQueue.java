@@ -0,0 +1,77 @@
+package com.botamochi.easyannouncement.network;
+
+import com.botamochi.easyannouncement.screen.MainScreenHandler;
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.network.Packet;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 設定変更の同期をティックの終わりにまとめて送るキュー。
+ * {@link AnnounceTile#markDirty} only records the tile here; at the end of the server tick every dirty
+ * tile is flushed once. Players tracking its chunk receive the vanilla block-entity update
+ * ({@link AnnounceTile#toUpdatePacket}); players with its screen open additionally get one announce_delta
+ * carrying only the fields that actually changed, so the GUI can refresh.
+ */
+public class AnnounceSyncQueue {
+    private static final Map<RegistryKey<World>, ObjectLinkedOpenHashSet<AnnounceTile>> DIRTY = new HashMap<>();
+
+    public static void mark(ServerWorld world, AnnounceTile tile) {
+        DIRTY.computeIfAbsent(world.getRegistryKey(), key -> new ObjectLinkedOpenHashSet<>()).add(tile);
+    }
+
+    public static void remove(ServerWorld world) {
+        DIRTY.remove(world.getRegistryKey());
+    }
+
+    public static void clear() {
+        DIRTY.clear();
+    }
+
+    /**
+     * Sends the coalesced updates of this tick. Run once at the end of every server tick.
+     */
+    public static void flush(MinecraftServer server) {
+        if (DIRTY.isEmpty()) return;
+        for (ServerWorld world : server.getWorlds()) {
+            ObjectLinkedOpenHashSet<AnnounceTile> dirty = DIRTY.get(world.getRegistryKey());
+            if (dirty == null || dirty.isEmpty()) continue;
+            while (!dirty.isEmpty()) {
+                AnnounceTile tile = dirty.removeFirst();
+                if (tile.isRemoved() || tile.getWorld() != world) continue;
+                int fields = tile.takeDirtySyncFields();
+                // 保存のためだけの markDirty は送らない
+                if (fields == 0) continue;
+                sync(world, tile, fields);
+            }
+        }
+    }
+
+    private static void sync(ServerWorld world, AnnounceTile tile, int fields) {
+        // 追跡中のプレイヤーにはチャンクホルダー経由で toUpdatePacket が送られる
+        BlockState state = tile.getCachedState();
+        world.updateListeners(tile.getPos(), state, state, Block.NOTIFY_ALL);
+        Packet<?> packet = null;
+        for (ServerPlayerEntity player : world.getPlayers()) {
+            if (player.currentScreenHandler instanceof MainScreenHandler handler && handler.getBlockEntity() == tile
+                    && AnnounceProtocol.isVerified(player)) {
+                if (packet == null) {
+                    // テンプレートが変わったら、その内容ごと完全な状態を送り直す
+                    packet = (fields & AnnounceConfigSync.FIELD_TEMPLATE) != 0
+                            ? AnnounceSendToClient.createUpdatePacket(tile.getPos(), tile.getConfig(), tile.nextSyncRevision())
+                            : AnnounceConfigSync.createDeltaPacket(tile, fields, tile.nextSyncRevision());
+                }
+                player.networkHandler.sendPacket(packet);
+            }
+        }
+    }
+}
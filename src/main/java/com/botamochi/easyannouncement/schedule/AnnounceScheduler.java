@@ -0,0 +1,403 @@
+package com.botamochi.easyannouncement.schedule;
+
+import com.botamochi.easyannouncement.Easyannouncement;
+import com.botamochi.easyannouncement.config.EAConfig;
+import com.botamochi.easyannouncement.schedule.PlatformArrivalIndex.NextArrival;
+import com.botamochi.easyannouncement.schedule.PlatformArrivalIndex.PlatformArrivals;
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import mtr.data.RailwayData;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * ワールドごとの放送トリガースケジューラ。
+ * Holds the next wake-up time of every active announcer of one world in a {@link TimingWheel}.
+ * An announcer is only re-evaluated when its wake-up time is due or when the schedule of one of
+ * its platforms changes, so the steady-state tick cost is proportional to the triggers due.
+ * Announcers that select the same platform set share one {@link PlatformGroup}, so the next
+ * arrival and its resolved announcement text are computed once per group.
+ * <p>
+ * Work is time-sliced against {@link EAConfig#tickBudgetNanos}: wake-ups whose trigger is imminent
+ * always run, while pre-wakes, re-arms and schedule refreshes are queued and drained round-robin
+ * while budget remains.
+ * <p>
+ * A schedule change is evaluated in two phases: the server thread captures a {@link RailwaySnapshot}
+ * and hands a {@link ScheduleEvaluation} to {@link EvaluationWorkers}; the finished evaluation is
+ * committed at the start of a later tick, which only installs the results and re-arms the members.
+ */
+public class AnnounceScheduler {
+    private static final Map<RegistryKey<World>, AnnounceScheduler> SCHEDULERS = new HashMap<>();
+    // プラットフォームの時刻表の変化を確認する間隔 (tick)
+    private static final int SCHEDULE_CHECK_INTERVAL = 20;
+    // 予算超過の警告ログを出す最短間隔
+    private static final long OVERRUN_LOG_INTERVAL_MILLIS = 60_000L;
+
+    private static long overrunTicks = 0;
+    private static long lastTickNanos = 0;
+    private static long maxTickNanos = 0;
+    private static long lastOverrunLogMillis = 0;
+
+    private final ServerWorld world;
+    private final TimingWheel<AnnounceTile> wheel;
+    private final Map<PlatformGroup.Key, PlatformGroup> groups = new HashMap<>();
+    private final Map<AnnounceTile, PlatformGroup> tileGroups = new HashMap<>();
+    private final Long2ObjectOpenHashMap<Set<PlatformGroup>> platformGroups = new Long2ObjectOpenHashMap<>();
+    private final PlatformArrivalIndex arrivalIndex;
+    // 予算内で後回しにした評価待ちのアナウンサーと、時刻表確認待ちのプラットフォーム
+    private final ObjectLinkedOpenHashSet<AnnounceTile> pending = new ObjectLinkedOpenHashSet<>();
+    private final LongArrayFIFOQueue refreshQueue = new LongArrayFIFOQueue();
+    // ワーカーで計算中のプラットフォームと、計算が終わってコミット待ちのジョブ
+    private final LongOpenHashSet inFlight = new LongOpenHashSet();
+    private final ConcurrentLinkedQueue<ScheduleEvaluation> completed = new ConcurrentLinkedQueue<>();
+    private int ticksUntilScheduleCheck = 0;
+    private long deferredTotal = 0;
+
+    private AnnounceScheduler(ServerWorld world) {
+        this.world = world;
+        this.wheel = new TimingWheel<>(System.currentTimeMillis());
+        this.arrivalIndex = new PlatformArrivalIndex(world);
+    }
+
+    public static AnnounceScheduler get(ServerWorld world) {
+        return SCHEDULERS.computeIfAbsent(world.getRegistryKey(), key -> new AnnounceScheduler(world));
+    }
+
+    public static AnnounceScheduler getIfPresent(World world) {
+        return SCHEDULERS.get(world.getRegistryKey());
+    }
+
+    public static void remove(ServerWorld world) {
+        AnnounceScheduler scheduler = SCHEDULERS.remove(world.getRegistryKey());
+        if (scheduler != null) {
+            scheduler.wheel.clear();
+            scheduler.arrivalIndex.clear();
+        }
+    }
+
+    public static void clear() {
+        SCHEDULERS.values().forEach(scheduler -> {
+            scheduler.wheel.clear();
+            scheduler.arrivalIndex.clear();
+        });
+        SCHEDULERS.clear();
+        overrunTicks = 0;
+        lastTickNanos = 0;
+        maxTickNanos = 0;
+    }
+
+    /**
+     * Runs the schedulers of every world under one shared per-tick budget.
+     */
+    public static void tickAll(MinecraftServer server) {
+        long start = System.nanoTime();
+        long budget = EAConfig.get().tickBudgetNanos;
+        long deadline = start + budget;
+        for (ServerWorld world : server.getWorlds()) {
+            AnnounceScheduler scheduler = SCHEDULERS.get(world.getRegistryKey());
+            if (scheduler != null) {
+                scheduler.tick(deadline);
+            }
+        }
+        lastTickNanos = System.nanoTime() - start;
+        maxTickNanos = Math.max(maxTickNanos, lastTickNanos);
+        if (lastTickNanos > budget) {
+            overrunTicks++;
+            long nowMillis = System.currentTimeMillis();
+            if (nowMillis - lastOverrunLogMillis >= OVERRUN_LOG_INTERVAL_MILLIS) {
+                lastOverrunLogMillis = nowMillis;
+                Easyannouncement.LOGGER.warn("Announcer evaluation took {} us (budget {} us), {} announcers deferred; {} overrun ticks so far",
+                        lastTickNanos / 1000, budget / 1000, getDeferredCount(), overrunTicks);
+            }
+        }
+    }
+
+    public static long getOverrunTicks() {
+        return overrunTicks;
+    }
+
+    public static long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    public static long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    public static int getDeferredCount() {
+        int count = 0;
+        for (AnnounceScheduler scheduler : SCHEDULERS.values()) {
+            count += scheduler.pending.size();
+        }
+        return count;
+    }
+
+    public static Map<RegistryKey<World>, AnnounceScheduler> getSchedulers() {
+        return Collections.unmodifiableMap(SCHEDULERS);
+    }
+
+    /**
+     * (Re-)computes the next wake-up time of an announcer and puts it on the wheel.
+     * Call whenever a timing-relevant setting of the tile changes.
+     */
+    public void arm(AnnounceTile tile) {
+        arm(tile, System.currentTimeMillis());
+    }
+
+    public void disarm(AnnounceTile tile) {
+        wheel.cancel(tile);
+        pending.remove(tile);
+        unwatch(tile);
+    }
+
+    /**
+     * The per-platform arrival index shared by every announcer of this world.
+     */
+    public PlatformArrivalIndex getArrivalIndex() {
+        return arrivalIndex;
+    }
+
+    public int getArmedCount() {
+        return wheel.size();
+    }
+
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public int getPendingRefreshCount() {
+        return refreshQueue.size();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Total number of evaluations that were pushed to a later tick by the budget.
+     */
+    public long getDeferredTotal() {
+        return deferredTotal;
+    }
+
+    /**
+     * The next arrival shared by every announcer with the same platform set as {@code tile}.
+     */
+    public NextArrival getNextArrival(AnnounceTile tile, long now) {
+        return watch(tile).getNext(arrivalIndex, now);
+    }
+
+    /**
+     * The announcement values (destination, route type, HH:MM) resolved once for the tile's group.
+     */
+    public ResolvedAnnouncement resolve(AnnounceTile tile, long now) {
+        return watch(tile).getResolved(arrivalIndex, RailwayData.getInstance(world), now);
+    }
+
+    public void tick(long deadlineNanos) {
+        long now = System.currentTimeMillis();
+        commitEvaluations();
+        if (--ticksUntilScheduleCheck <= 0) {
+            ticksUntilScheduleCheck = SCHEDULE_CHECK_INTERVAL;
+            queuePlatformRefresh();
+        }
+        wheel.advance(now, tile -> {
+            if (tile.isRemoved()) {
+                unwatch(tile);
+                return;
+            }
+            // 発火直前のものは予算に関係なく今評価する。それ以外は後回しにできる
+            if (tile.isTriggerImminent(watch(tile).getNext(arrivalIndex, now), now)) {
+                pending.remove(tile);
+                evaluate(tile, now);
+            } else {
+                pending.add(tile);
+            }
+        });
+        refreshChangedPlatforms(deadlineNanos, now);
+        drainPending(deadlineNanos, now);
+    }
+
+    private void evaluate(AnnounceTile tile, long now) {
+        tile.onTriggerWake(world, now);
+        arm(tile, now);
+    }
+
+    private void drainPending(long deadlineNanos, long now) {
+        boolean first = true;
+        while (!pending.isEmpty()) {
+            // 飢餓を防ぐため、予算切れでも 1 tick に最低 1 件は進める
+            if (!first && System.nanoTime() >= deadlineNanos) {
+                deferredTotal += pending.size();
+                return;
+            }
+            first = false;
+            AnnounceTile tile = pending.removeFirst();
+            if (tile.isRemoved()) {
+                disarm(tile);
+            } else {
+                evaluate(tile, now);
+            }
+        }
+    }
+
+    private void arm(AnnounceTile tile, long now) {
+        PlatformGroup group = watch(tile);
+        long wakeMillis = tile.getNextWakeMillis(group.getNext(arrivalIndex, now), now);
+        if (wakeMillis < 0) {
+            // 待つべき列車がない。時刻表が変わった時に再計算される
+            wheel.cancel(tile);
+        } else {
+            wheel.schedule(tile, wakeMillis);
+        }
+    }
+
+    private void queuePlatformRefresh() {
+        // 前回の一巡が終わっていなければ、残りを先に片付ける
+        if (!refreshQueue.isEmpty()) return;
+        for (LongIterator it = platformGroups.keySet().iterator(); it.hasNext(); ) {
+            refreshQueue.enqueue(it.nextLong());
+        }
+    }
+
+    private void refreshChangedPlatforms(long deadlineNanos, long now) {
+        if (refreshQueue.isEmpty()) return;
+        RailwayData railwayData = RailwayData.getInstance(world);
+        if (railwayData == null) return;
+
+        LongArrayList changed = null;
+        while (!refreshQueue.isEmpty() && System.nanoTime() < deadlineNanos) {
+            long platformId = refreshQueue.dequeueLong();
+            // 計算中のものは結果のコミット後の巡回で改めて確認する
+            if (!platformGroups.containsKey(platformId) || inFlight.contains(platformId)) continue;
+            long signature = PlatformArrivalIndex.currentSignature(railwayData, platformId);
+            if (arrivalIndex.getIfBuilt(platformId) == null || arrivalIndex.getSignature(platformId) != signature) {
+                if (changed == null) changed = new LongArrayList();
+                changed.add(platformId);
+            }
+        }
+        if (changed != null) {
+            submitEvaluation(railwayData, changed.toLongArray(), now);
+        }
+    }
+
+    private void submitEvaluation(RailwayData railwayData, long[] changedPlatformIds, long now) {
+        // 影響を受けるグループと、その計算に必要なプラットフォームを集める
+        Set<PlatformGroup> affected = new LinkedHashSet<>();
+        LongLinkedOpenHashSet platformIds = new LongLinkedOpenHashSet(changedPlatformIds);
+        for (long platformId : changedPlatformIds) {
+            affected.addAll(platformGroups.get(platformId));
+        }
+        List<PlatformGroup.Key> groupKeys = new ArrayList<>(affected.size());
+        for (PlatformGroup group : affected) {
+            groupKeys.add(group.getKey());
+            for (long platformId : group.getKey().getPlatformIds()) {
+                platformIds.add(platformId);
+            }
+        }
+        Long2ObjectOpenHashMap<PlatformArrivals> unchanged = new Long2ObjectOpenHashMap<>();
+        for (LongIterator it = platformIds.iterator(); it.hasNext(); ) {
+            long platformId = it.nextLong();
+            PlatformArrivals arrivals = arrivalIndex.getIfBuilt(platformId);
+            if (arrivals != null) unchanged.put(platformId, arrivals);
+        }
+        for (long platformId : changedPlatformIds) {
+            unchanged.remove(platformId);
+            inFlight.add(platformId);
+        }
+
+        RailwaySnapshot snapshot = RailwaySnapshot.capture(railwayData, platformIds.toLongArray());
+        ScheduleEvaluation evaluation = new ScheduleEvaluation(snapshot, changedPlatformIds, groupKeys, unchanged, now);
+        EvaluationWorkers.submit(evaluation, () -> evaluation.failed = true, () -> completed.add(evaluation));
+    }
+
+    private void commitEvaluations() {
+        ScheduleEvaluation evaluation;
+        while ((evaluation = completed.poll()) != null) {
+            for (long platformId : evaluation.changedPlatformIds) {
+                inFlight.remove(platformId);
+                if (!evaluation.failed && platformGroups.containsKey(platformId)) {
+                    arrivalIndex.install(platformId, evaluation.snapshot.getSignature(platformId), evaluation.built.get(platformId));
+                }
+            }
+            for (int i = 0; i < evaluation.groupKeys.size(); i++) {
+                PlatformGroup group = groups.get(evaluation.groupKeys.get(i));
+                if (group == null) continue;
+                if (evaluation.failed || isAnyInFlight(group.getKey())) {
+                    // 他のジョブが同じグループを計算中なら、ここでの値は使わずその場で計算し直させる
+                    group.invalidate();
+                } else {
+                    group.apply(evaluation.nexts[i], evaluation.resolved[i], evaluation.snapshot);
+                }
+                pending.addAll(group.getMembers());
+            }
+        }
+    }
+
+    private boolean isAnyInFlight(PlatformGroup.Key key) {
+        if (inFlight.isEmpty()) return false;
+        for (long platformId : key.getPlatformIds()) {
+            if (inFlight.contains(platformId)) return true;
+        }
+        return false;
+    }
+
+    private PlatformGroup watch(AnnounceTile tile) {
+        // 選択済みプラットフォームは正規化済みなので、変わっていなければキーを作らずに済む
+        long[] platformIds = tile.getWatchedPlatformIds();
+        PlatformGroup current = tileGroups.get(tile);
+        if (current != null && Arrays.equals(current.getKey().getPlatformIds(), platformIds)) return current;
+        PlatformGroup.Key key = PlatformGroup.Key.of(platformIds);
+        unwatch(tile);
+        PlatformGroup group = groups.get(key);
+        if (group == null) {
+            PlatformGroup created = new PlatformGroup(key);
+            groups.put(key, created);
+            for (long platformId : key.getPlatformIds()) {
+                platformGroups.computeIfAbsent(platformId, id -> new LinkedHashSet<>()).add(created);
+            }
+            group = created;
+        }
+        group.getMembers().add(tile);
+        tileGroups.put(tile, group);
+        return group;
+    }
+
+    private void unwatch(AnnounceTile tile) {
+        PlatformGroup group = tileGroups.remove(tile);
+        if (group == null) return;
+        group.getMembers().remove(tile);
+        if (!group.getMembers().isEmpty()) return;
+        // 最後のメンバーが抜けたグループは破棄し、誰も見ていないプラットフォームのインデックスも捨てる
+        groups.remove(group.getKey());
+        for (long platformId : group.getKey().getPlatformIds()) {
+            Set<PlatformGroup> sharing = platformGroups.get(platformId);
+            if (sharing != null && sharing.remove(group) && sharing.isEmpty()) {
+                platformGroups.remove(platformId);
+                arrivalIndex.remove(platformId);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.botamochi.easyannouncement.schedule;
+
+import com.botamochi.easyannouncement.Easyannouncement;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 時刻表評価用のワーカースレッドプール。
+ * With zero threads configured, tasks simply run on the calling thread.
+ */
+public class EvaluationWorkers {
+    private static ExecutorService executor;
+
+    public static synchronized void start(int threads) {
+        shutdown();
+        if (threads <= 0) return;
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "EasyAnnouncement-Worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    public static synchronized void shutdown() {
+        if (executor == null) return;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    /**
+     * Runs {@code task} on a worker, then {@code onDone} on the same thread whether or not the task failed.
+     */
+    public static void submit(Runnable task, Runnable onFailure, Runnable onDone) {
+        Runnable wrapped = () -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                Easyannouncement.LOGGER.error("Announcer schedule evaluation failed", t);
+                onFailure.run();
+            } finally {
+                onDone.run();
+            }
+        };
+        ExecutorService current = executor;
+        if (current == null) {
+            wrapped.run();
+            return;
+        }
+        try {
+            current.execute(wrapped);
+        } catch (RejectedExecutionException e) {
+            // 停止処理と競合した場合はその場で実行する
+            wrapped.run();
+        }
+    }
+}
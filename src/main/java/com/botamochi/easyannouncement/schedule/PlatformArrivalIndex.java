@@ -0,0 +1,309 @@
+package com.botamochi.easyannouncement.schedule;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import mtr.data.RailwayData;
+import mtr.data.ScheduleEntry;
+import net.minecraft.server.world.ServerWorld;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.LongFunction;
+
+/**
+ * プラットフォームごとの到着順インデックス。
+ * Keeps, per platform ID, an arrival-ordered snapshot of {@link RailwayData#getSchedulesAtPlatform}
+ * together with a precomputed "next non-terminating entry" pointer. A snapshot is only rebuilt when
+ * the platform's schedule changes and is shared by every announcer of the world.
+ * Snapshots are immutable and built from a {@link RailwaySnapshot}, so they can be prepared on a
+ * worker thread and {@link #install installed} on the server thread.
+ */
+public class PlatformArrivalIndex {
+    private final ServerWorld world;
+    private final Long2ObjectOpenHashMap<PlatformArrivals> platforms = new Long2ObjectOpenHashMap<>();
+    private final Long2LongOpenHashMap signatures = new Long2LongOpenHashMap();
+    // selectNext に渡す参照 (毎回メソッド参照を作らない)
+    private final LongFunction<PlatformArrivals> lookup = this::get;
+
+    public PlatformArrivalIndex(ServerWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Returns the arrival snapshot of a platform, building it on the calling (server) thread on first use.
+     */
+    public PlatformArrivals get(long platformId) {
+        PlatformArrivals arrivals = platforms.get(platformId);
+        if (arrivals == null) {
+            RailwayData railwayData = RailwayData.getInstance(world);
+            if (railwayData == null) return PlatformArrivals.EMPTY;
+            RailwaySnapshot snapshot = RailwaySnapshot.capture(railwayData, new long[]{platformId});
+            arrivals = PlatformArrivals.build(snapshot, platformId);
+            install(platformId, snapshot.getSignature(platformId), arrivals);
+        }
+        return arrivals;
+    }
+
+    /**
+     * The arrival snapshot of a platform if one was built, without building it.
+     */
+    public PlatformArrivals getIfBuilt(long platformId) {
+        return platforms.get(platformId);
+    }
+
+    /**
+     * Computes the current schedule signature of a platform; compare with {@link #getSignature}.
+     */
+    public static long currentSignature(RailwayData railwayData, long platformId) {
+        return RailwaySnapshot.signature(railwayData.getSchedulesAtPlatform(platformId));
+    }
+
+    public long getSignature(long platformId) {
+        return signatures.get(platformId);
+    }
+
+    public void install(long platformId, long signature, PlatformArrivals arrivals) {
+        signatures.put(platformId, signature);
+        platforms.put(platformId, arrivals);
+    }
+
+    public void remove(long platformId) {
+        platforms.remove(platformId);
+        signatures.remove(platformId);
+    }
+
+    public void clear() {
+        platforms.clear();
+        signatures.clear();
+    }
+
+    public int size() {
+        return platforms.size();
+    }
+
+    /**
+     * {@link #selectNext(LongFunction, long[], long, NextArrival)} over this index, building missing
+     * platforms on the calling (server) thread.
+     */
+    public boolean selectNext(long[] platformIds, long now, NextArrival out) {
+        return selectNext(lookup, platformIds, now, out);
+    }
+
+    /**
+     * Picks the next arrival over several platforms like the PIDS does: the earliest upcoming
+     * non-terminating train, or the earliest terminating one if there is none.
+     * A k-way minimum over the per-platform arrival orders: one binary search per platform and no
+     * allocation. The choice is written into {@code out}; returns false (and clears it) if there is none.
+     * Ties go to the platform that comes first in {@code platformIds}. Announcers pass their group's sorted
+     * key ({@link PlatformGroup.Key}), so equal arrivals are broken by ascending platform ID rather than by the
+     * order the player selected the platforms in. Thread-safe as long as {@code lookup} is.
+     */
+    public static boolean selectNext(LongFunction<PlatformArrivals> lookup, long[] platformIds, long now, NextArrival out) {
+        out.clear();
+        if (platformIds == null || platformIds.length == 0) return false;
+        PlatformArrivals best = null;
+        int bestIndex = -1;
+        int bestPlatform = -1;
+        PlatformArrivals fallback = null;
+        int fallbackIndex = -1;
+        int fallbackPlatform = -1;
+        for (int i = 0; i < platformIds.length; i++) {
+            PlatformArrivals arrivals = lookup.apply(platformIds[i]);
+            if (arrivals == null) continue;
+            int first = arrivals.firstUpcoming(now);
+            int nonTerminating = arrivals.nextNonTerminating(first);
+            if (nonTerminating >= 0 && (best == null || arrivals.arrivalAt(nonTerminating) < best.arrivalAt(bestIndex))) {
+                best = arrivals;
+                bestIndex = nonTerminating;
+                bestPlatform = i;
+            }
+            int withRoute = arrivals.nextWithRoute(first);
+            if (withRoute >= 0 && (fallback == null || arrivals.arrivalAt(withRoute) < fallback.arrivalAt(fallbackIndex))) {
+                fallback = arrivals;
+                fallbackIndex = withRoute;
+                fallbackPlatform = i;
+            }
+        }
+        if (best != null) {
+            out.set(platformIds[bestPlatform], best.routeIdAt(bestIndex), best.stationIndexAt(bestIndex), best.arrivalAt(bestIndex));
+            return true;
+        }
+        if (fallback != null) {
+            out.set(platformIds[fallbackPlatform], fallback.routeIdAt(fallbackIndex), fallback.stationIndexAt(fallbackIndex), fallback.arrivalAt(fallbackIndex));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The chosen schedule entry, as primitives, together with the platform it was found on.
+     * A reusable holder: {@link PlatformGroup} keeps one and rewrites it in place on every reselection,
+     * so read the values right away instead of keeping the instance.
+     */
+    public static final class NextArrival {
+        private boolean present;
+        private long platformId = -1L;
+        private long routeId = -1L;
+        private int currentStationIndex = -1;
+        private long arrivalMillis;
+
+        public boolean isPresent() {
+            return present;
+        }
+
+        public long getPlatformId() {
+            return platformId;
+        }
+
+        public long getRouteId() {
+            return routeId;
+        }
+
+        public int getCurrentStationIndex() {
+            return currentStationIndex;
+        }
+
+        public long getArrivalMillis() {
+            return arrivalMillis;
+        }
+
+        void set(long platformId, long routeId, int currentStationIndex, long arrivalMillis) {
+            this.present = true;
+            this.platformId = platformId;
+            this.routeId = routeId;
+            this.currentStationIndex = currentStationIndex;
+            this.arrivalMillis = arrivalMillis;
+        }
+
+        void set(NextArrival other) {
+            this.present = other.present;
+            this.platformId = other.platformId;
+            this.routeId = other.routeId;
+            this.currentStationIndex = other.currentStationIndex;
+            this.arrivalMillis = other.arrivalMillis;
+        }
+
+        void clear() {
+            this.present = false;
+            this.platformId = -1L;
+            this.routeId = -1L;
+            this.currentStationIndex = -1;
+            this.arrivalMillis = 0L;
+        }
+    }
+
+    /**
+     * Immutable, arrival-ordered schedule snapshot of one platform, stored as primitive columns.
+     */
+    public static final class PlatformArrivals {
+        public static final PlatformArrivals EMPTY = new PlatformArrivals(new long[0], new long[0], new int[0], new int[0], new int[0]);
+
+        private final long[] arrivals;
+        private final long[] routeIds;
+        private final int[] stationIndices;
+        // i 番目以降で最初の「終点止まりでない」エントリの添字 (なければ -1)
+        private final int[] nextNonTerminating;
+        // i 番目以降で最初の路線が存在するエントリの添字 (なければ -1)
+        private final int[] nextWithRoute;
+
+        private PlatformArrivals(long[] arrivals, long[] routeIds, int[] stationIndices, int[] nextNonTerminating, int[] nextWithRoute) {
+            this.arrivals = arrivals;
+            this.routeIds = routeIds;
+            this.stationIndices = stationIndices;
+            this.nextNonTerminating = nextNonTerminating;
+            this.nextWithRoute = nextWithRoute;
+        }
+
+        /**
+         * Builds the arrival order of one platform from a snapshot. Safe to call off the server thread.
+         */
+        public static PlatformArrivals build(RailwaySnapshot snapshot, long platformId) {
+            ScheduleEntry[] schedules = snapshot.getSchedules(platformId);
+            if (schedules.length == 0) return EMPTY;
+            ScheduleEntry[] entries = schedules.clone();
+            Arrays.sort(entries, Comparator.comparingLong(entry -> entry.arrivalMillis));
+
+            int size = entries.length;
+            long[] arrivals = new long[size];
+            long[] routeIds = new long[size];
+            int[] stationIndices = new int[size];
+            boolean[] hasRoute = new boolean[size];
+            boolean[] terminating = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                ScheduleEntry entry = entries[i];
+                arrivals[i] = entry.arrivalMillis;
+                routeIds[i] = entry.routeId;
+                stationIndices[i] = entry.currentStationIndex;
+                RailwaySnapshot.RouteInfo route = snapshot.getRoute(entry.routeId);
+                hasRoute[i] = route != null;
+                terminating[i] = route != null && route.isTerminating(entry.currentStationIndex);
+            }
+            return of(arrivals, routeIds, stationIndices, hasRoute, terminating);
+        }
+
+        /**
+         * Builds a snapshot from columns already in arrival order, computing the "next" pointers.
+         * {@code terminating} is only looked at where {@code hasRoute} is set.
+         */
+        static PlatformArrivals of(long[] arrivals, long[] routeIds, int[] stationIndices, boolean[] hasRoute, boolean[] terminating) {
+            int size = arrivals.length;
+            if (size == 0) return EMPTY;
+            int[] nextNonTerminating = new int[size];
+            int[] nextWithRoute = new int[size];
+            int nonTerminating = -1;
+            int withRoute = -1;
+            for (int i = size - 1; i >= 0; i--) {
+                if (hasRoute[i]) {
+                    withRoute = i;
+                    if (!terminating[i]) {
+                        nonTerminating = i;
+                    }
+                }
+                nextNonTerminating[i] = nonTerminating;
+                nextWithRoute[i] = withRoute;
+            }
+            return new PlatformArrivals(arrivals, routeIds, stationIndices, nextNonTerminating, nextWithRoute);
+        }
+
+        /**
+         * Index of the first entry arriving at or after {@code now}; {@link #size()} if none.
+         */
+        public int firstUpcoming(long now) {
+            int low = 0;
+            int high = arrivals.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (arrivals[mid] < now) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        public int nextNonTerminating(int from) {
+            return from < nextNonTerminating.length ? nextNonTerminating[from] : -1;
+        }
+
+        public int nextWithRoute(int from) {
+            return from < nextWithRoute.length ? nextWithRoute[from] : -1;
+        }
+
+        public long arrivalAt(int index) {
+            return arrivals[index];
+        }
+
+        public long routeIdAt(int index) {
+            return routeIds[index];
+        }
+
+        public int stationIndexAt(int index) {
+            return stationIndices[index];
+        }
+
+        public int size() {
+            return arrivals.length;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.botamochi.easyannouncement.schedule;
+
+import com.botamochi.easyannouncement.schedule.PlatformArrivalIndex.NextArrival;
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import mtr.data.RailwayData;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 同じプラットフォーム集合を選んだアナウンサーのグループ。
+ * Announcers with the same (canonicalised) platform set share one next-arrival choice and one
+ * {@link ResolvedAnnouncement}, computed once per schedule change; members only apply their own
+ * offset and audience rules on top of it.
+ * After a schedule change the values are normally computed on a worker thread and handed in through
+ * {@link #apply}; the server thread only falls back to computing them itself when they are missing.
+ */
+public class PlatformGroup {
+    private final Key key;
+    private final Set<AnnounceTile> members = new LinkedHashSet<>();
+
+    private boolean stale = true;
+    // 選択結果はその場で書き換える (再選択で割り当てない)
+    private final NextArrival next = new NextArrival();
+    private ResolvedAnnouncement resolved;
+    // 文字列の解決に使う RailwayData の切り出し
+    private RailwaySnapshot snapshot;
+
+    PlatformGroup(Key key) {
+        this.key = key;
+    }
+
+    public Key getKey() {
+        return key;
+    }
+
+    public Set<AnnounceTile> getMembers() {
+        return members;
+    }
+
+    /**
+     * The group's next arrival. Recomputed only after a schedule change or once the cached
+     * arrival has passed; the set of upcoming entries only shrinks in between.
+     * Returns the group's own holder (rewritten on the next reselection), or null if there is no arrival.
+     */
+    public NextArrival getNext(PlatformArrivalIndex index, long now) {
+        if (stale || (next.isPresent() && next.getArrivalMillis() < now)) {
+            index.selectNext(key.platformIds, now, next);
+            resolved = null;
+            stale = false;
+        }
+        return next.isPresent() ? next : null;
+    }
+
+    public ResolvedAnnouncement getResolved(PlatformArrivalIndex index, RailwayData railwayData, long now) {
+        NextArrival chosen = getNext(index, now);
+        if (resolved == null) {
+            if (railwayData != null && (snapshot == null || (chosen != null && !snapshot.hasRoute(chosen.getRouteId())))) {
+                // ワーカーの結果がまだ無い、または古い場合だけここで切り出す
+                snapshot = RailwaySnapshot.capture(railwayData, key.platformIds);
+            }
+            resolved = ResolvedAnnouncement.resolve(snapshot, key.platformIds, chosen);
+        }
+        return resolved;
+    }
+
+    /**
+     * Installs values computed off the server thread.
+     */
+    void apply(NextArrival next, ResolvedAnnouncement resolved, RailwaySnapshot snapshot) {
+        this.next.set(next);
+        this.resolved = resolved;
+        this.snapshot = snapshot;
+        this.stale = false;
+    }
+
+    void invalidate() {
+        stale = true;
+        resolved = null;
+    }
+
+    /**
+     * Canonical platform-set key: sorted, without duplicates.
+     * Announcers that picked the same platforms in a different order share a group, so the selection order
+     * is not kept: two trains arriving at the same time are tie-broken by ascending platform ID.
+     */
+    public static final class Key {
+        private final long[] platformIds;
+        private final int hash;
+
+        private Key(long[] platformIds) {
+            this.platformIds = platformIds;
+            this.hash = Arrays.hashCode(platformIds);
+        }
+
+        public static Key of(long[] platformIds) {
+            return new Key(Arrays.stream(platformIds).sorted().distinct().toArray());
+        }
+
+        public long[] getPlatformIds() {
+            return platformIds;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key other)) return false;
+            return Arrays.equals(platformIds, other.platformIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
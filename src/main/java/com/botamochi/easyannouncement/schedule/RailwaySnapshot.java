@@ -0,0 +1,163 @@
+package com.botamochi.easyannouncement.schedule;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import mtr.data.Platform;
+import mtr.data.RailwayData;
+import mtr.data.Route;
+import mtr.data.RouteType;
+import mtr.data.ScheduleEntry;
+import mtr.data.Station;
+
+import java.util.List;
+
+/**
+ * RailwayData の一部を切り出した不変スナップショット。
+ * Captured on the server thread for a set of platforms: their schedules, the routes those schedules
+ * refer to and the platforms' dwell times. Everything derived from it (arrival order, destination,
+ * route type, HH:MM) can then be computed on a worker thread without touching {@link RailwayData}.
+ */
+public final class RailwaySnapshot {
+    private static final ScheduleEntry[] NO_ENTRIES = new ScheduleEntry[0];
+
+    private final Long2ObjectOpenHashMap<ScheduleEntry[]> schedules;
+    private final Long2LongOpenHashMap signatures;
+    private final Long2ObjectOpenHashMap<RouteInfo> routes;
+    private final Long2LongOpenHashMap dwellMillis;
+    // 取得時点の RouteTokenCache の世代
+    private final int generation;
+
+    private RailwaySnapshot(Long2ObjectOpenHashMap<ScheduleEntry[]> schedules, Long2LongOpenHashMap signatures,
+                            Long2ObjectOpenHashMap<RouteInfo> routes, Long2LongOpenHashMap dwellMillis, int generation) {
+        this.schedules = schedules;
+        this.signatures = signatures;
+        this.routes = routes;
+        this.dwellMillis = dwellMillis;
+        this.generation = generation;
+    }
+
+    /**
+     * Copies what announcers of {@code platformIds} need. Must run on the server thread.
+     */
+    public static RailwaySnapshot capture(RailwayData railwayData, long[] platformIds) {
+        int generation = RouteTokenCache.generation();
+        Long2ObjectOpenHashMap<ScheduleEntry[]> schedules = new Long2ObjectOpenHashMap<>(platformIds.length);
+        Long2LongOpenHashMap signatures = new Long2LongOpenHashMap(platformIds.length);
+        Long2ObjectOpenHashMap<RouteInfo> routes = new Long2ObjectOpenHashMap<>();
+        Long2LongOpenHashMap dwellMillis = new Long2LongOpenHashMap(platformIds.length);
+        for (long platformId : platformIds) {
+            List<ScheduleEntry> list = railwayData.getSchedulesAtPlatform(platformId);
+            ScheduleEntry[] entries = list == null ? NO_ENTRIES : list.toArray(NO_ENTRIES);
+            schedules.put(platformId, entries);
+            signatures.put(platformId, signature(list));
+            for (ScheduleEntry entry : entries) {
+                if (!routes.containsKey(entry.routeId)) {
+                    Route route = railwayData.dataCache.routeIdMap.get(entry.routeId);
+                    routes.put(entry.routeId, route != null ? RouteInfo.capture(railwayData, route) : null);
+                }
+            }
+            Platform platform = railwayData.dataCache.platformIdMap.get(platformId);
+            if (platform != null) {
+                // dwellTime is in seconds, convert to milliseconds
+                dwellMillis.put(platformId, platform.getDwellTime() * 1000L);
+            }
+        }
+        return new RailwaySnapshot(schedules, signatures, routes, dwellMillis, generation);
+    }
+
+    /**
+     * Cheap fingerprint of a platform's schedule. Arrivals are compared at one-second resolution
+     * so that the small drift of recalculated arrival times does not trigger a rebuild every check.
+     */
+    public static long signature(List<ScheduleEntry> schedules) {
+        if (schedules == null) return 0L;
+        long signature = schedules.size();
+        for (ScheduleEntry entry : schedules) {
+            signature = signature * 31 + entry.routeId;
+            signature = signature * 31 + entry.currentStationIndex;
+            signature = signature * 31 + entry.arrivalMillis / 1000L;
+        }
+        return signature;
+    }
+
+    public ScheduleEntry[] getSchedules(long platformId) {
+        return schedules.getOrDefault(platformId, NO_ENTRIES);
+    }
+
+    public long getSignature(long platformId) {
+        return signatures.get(platformId);
+    }
+
+    public boolean hasRoute(long routeId) {
+        return routes.containsKey(routeId);
+    }
+
+    /**
+     * The captured route, or null if it did not exist at capture time.
+     */
+    public RouteInfo getRoute(long routeId) {
+        return routes.get(routeId);
+    }
+
+    /**
+     * The {@link RouteTokenCache} generation this snapshot was captured in.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Dwell time of a platform in milliseconds, or -1 if the platform did not exist.
+     */
+    public long getDwellMillis(long platformId) {
+        return dwellMillis.containsKey(platformId) ? dwellMillis.get(platformId) : -1L;
+    }
+
+    /**
+     * The parts of a {@link Route} the announcement text is derived from.
+     */
+    public static final class RouteInfo {
+        public final int platformCount;
+        public final String[] destinations;
+        public final RouteType routeType;
+        public final String lightRailRouteNumber;
+        // 終着プラットフォームの駅名 (なければ null)
+        public final String lastStationName;
+
+        private RouteInfo(int platformCount, String[] destinations, RouteType routeType, String lightRailRouteNumber, String lastStationName) {
+            this.platformCount = platformCount;
+            this.destinations = destinations;
+            this.routeType = routeType;
+            this.lightRailRouteNumber = lightRailRouteNumber;
+            this.lastStationName = lastStationName;
+        }
+
+        private static RouteInfo capture(RailwayData railwayData, Route route) {
+            int platformCount = route.platformIds.size();
+            String[] destinations = new String[Math.max(platformCount, 0)];
+            for (int i = 0; i < platformCount; i++) {
+                destinations[i] = route.getDestination(i);
+            }
+            String lastStationName = null;
+            long lastPlatformId = route.getLastPlatformId();
+            Platform lastPlatform = railwayData.dataCache.platformIdMap.get(lastPlatformId);
+            Station lastStation = railwayData.dataCache.platformIdToStation.get(lastPlatformId);
+            if (lastPlatform != null && lastStation != null) {
+                lastStationName = lastStation.name;
+            }
+            return new RouteInfo(platformCount, destinations, route.routeType, route.lightRailRouteNumber, lastStationName);
+        }
+
+        /**
+         * Custom destination for the given station index, clamped like {@code Route#getDestination}.
+         */
+        public String getDestination(int stationIndex) {
+            if (destinations.length == 0) return null;
+            return destinations[Math.max(0, Math.min(stationIndex, destinations.length - 1))];
+        }
+
+        public boolean isTerminating(int stationIndex) {
+            return stationIndex >= platformCount - 1;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.botamochi.easyannouncement.schedule;
+
+import com.botamochi.easyannouncement.schedule.PlatformArrivalIndex.NextArrival;
+import com.botamochi.easyannouncement.schedule.RailwaySnapshot.RouteInfo;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * announce_start で送る置換値 (行先・種別・発車時刻) を解決済みの状態で保持する。
+ * The placeholder values of one announcement, derived from the chosen schedule entry.
+ * Immutable, so a {@link PlatformGroup} can hand the same instance to all of its members.
+ * Resolution only reads a {@link RailwaySnapshot} and may run on a worker thread.
+ */
+public final class ResolvedAnnouncement {
+    public final String destination;
+    public final String routeType;
+    public final String hh;
+    public final String mm;
+    public final long chosenPlatformId;
+    public final long chosenRouteId;
+    public final int chosenCurrentStationIndex;
+
+    private ResolvedAnnouncement(String destination, String routeType, String hh, String mm,
+                                 long chosenPlatformId, long chosenRouteId, int chosenCurrentStationIndex) {
+        this.destination = destination;
+        this.routeType = routeType;
+        this.hh = hh;
+        this.mm = mm;
+        this.chosenPlatformId = chosenPlatformId;
+        this.chosenRouteId = chosenRouteId;
+        this.chosenCurrentStationIndex = chosenCurrentStationIndex;
+    }
+
+    public static ResolvedAnnouncement resolve(RailwaySnapshot snapshot, long[] selectedPlatforms, NextArrival chosen) {
+        if (chosen == null || !chosen.isPresent()) {
+            // No schedule found: same placeholders the per-player lookups used to produce
+            if (selectedPlatforms.length == 0) {
+                return new ResolvedAnnouncement("destination_not_found", "route_type_not_found", "00", "00", -1L, -1L, -1);
+            }
+            if (snapshot == null) {
+                return new ResolvedAnnouncement("railwaydata_unknown", "railwaydata_unknown", "00", "00", -1L, -1L, -1);
+            }
+            return new ResolvedAnnouncement("schedules_unknown", "schedules_unknown", "00", "00", -1L, -1L, -1);
+        }
+
+        String calculatedDestination;
+        String calculatedRouteType;
+
+        // 行先・種別は RouteTokenCache から (文字列処理は路線ごとに一度だけ)
+        final RouteInfo route = snapshot != null ? snapshot.getRoute(chosen.getRouteId()) : null;
+        if (route != null) {
+            calculatedDestination = RouteTokenCache.destination(snapshot, chosen.getRouteId(), route, chosen.getCurrentStationIndex());
+            calculatedRouteType = RouteTokenCache.routeType(snapshot, chosen.getRouteId(), route);
+        } else {
+            calculatedDestination = "route_unknown";
+            calculatedRouteType = "";
+        }
+
+        // HH:MM from the chosen entry arrivalMillis + dwell time (departure time)
+        long departureMillis = chosen.getArrivalMillis();
+        long dwellMillis = snapshot != null ? snapshot.getDwellMillis(chosen.getPlatformId()) : -1L;
+        if (dwellMillis >= 0) {
+            departureMillis = chosen.getArrivalMillis() + dwellMillis;
+        }
+        ZonedDateTime zdt = Instant.ofEpochMilli(departureMillis).atZone(ZoneId.systemDefault());
+        String hh = String.format("%02d", zdt.getHour());
+        String mm = String.format("%02d", zdt.getMinute());
+
+        return new ResolvedAnnouncement(calculatedDestination, calculatedRouteType, hh, mm,
+                chosen.getPlatformId(), chosen.getRouteId(), chosen.getCurrentStationIndex());
+    }
+}
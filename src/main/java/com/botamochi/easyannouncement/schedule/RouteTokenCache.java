@@ -0,0 +1,126 @@
+package com.botamochi.easyannouncement.schedule;
+
+import com.botamochi.easyannouncement.schedule.RailwaySnapshot.RouteInfo;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 行先・種別トークンのキャッシュ。
+ * Caches the finished destination token per (routeId, currentStationIndex) and the route-type token per
+ * route, so resolving an announcement does no {@code '|'} splitting or case folding once a route was seen.
+ * Cleared whenever MTR rebuilds its {@code DataCache} (see {@code DataCacheMixin}). Every cached entry carries the
+ * generation of the snapshot it was computed from and is only handed to snapshots of that generation, so a worker
+ * racing with {@link #invalidate} can neither serve nor keep tokens from before the rebuild. Safe to use from
+ * worker threads.
+ */
+public final class RouteTokenCache {
+    private static final ConcurrentHashMap<Long, RouteTokens> CACHE = new ConcurrentHashMap<>();
+    private static volatile int generation = 0;
+
+    private RouteTokenCache() {
+    }
+
+    public static int generation() {
+        return generation;
+    }
+
+    /**
+     * Called after MTR's data cache was rebuilt: route names, destinations and types may have changed.
+     */
+    public static void invalidate() {
+        generation++;
+        CACHE.clear();
+    }
+
+    public static int size() {
+        return CACHE.size();
+    }
+
+    public static String destination(RailwaySnapshot snapshot, long routeId, RouteInfo route, int stationIndex) {
+        RouteTokens tokens = tokens(snapshot, routeId, route);
+        // 範囲外の駅番号は他の駅の枠に入れない
+        if (stationIndex < 0 || stationIndex >= tokens.destinations.length()) {
+            return computeDestination(route, stationIndex);
+        }
+        String token = tokens.destinations.get(stationIndex);
+        if (token == null) {
+            token = computeDestination(route, stationIndex);
+            tokens.destinations.set(stationIndex, token);
+        }
+        return token;
+    }
+
+    public static String routeType(RailwaySnapshot snapshot, long routeId, RouteInfo route) {
+        return tokens(snapshot, routeId, route).routeType;
+    }
+
+    // 返すのは常に snapshot と同じ世代のもの (destination() はそこに同じ世代の RouteInfo からしか書かない)
+    private static RouteTokens tokens(RailwaySnapshot snapshot, long routeId, RouteInfo route) {
+        int snapshotGeneration = snapshot.getGeneration();
+        RouteTokens tokens = CACHE.get(routeId);
+        if (tokens != null && tokens.generation == snapshotGeneration) return tokens;
+        RouteTokens fresh = new RouteTokens(route, snapshotGeneration);
+        // 再構築前のスナップショットから作ったものはキャッシュに入れない
+        if (snapshotGeneration != generation) return fresh;
+        // invalidate() と競合しても、古い世代が新しい世代を上書きすることはない
+        RouteTokens cached = CACHE.compute(routeId, (id, existing) ->
+                existing != null && existing.generation >= snapshotGeneration ? existing : fresh);
+        return cached.generation == snapshotGeneration ? cached : fresh;
+    }
+
+    private static String computeDestination(RouteInfo route, int stationIndex) {
+        // Prefer custom destination relative to current station index
+        String customDest = route.getDestination(stationIndex);
+        if (customDest != null && !customDest.isEmpty()) {
+            return lastSegment(customDest);
+        }
+        // Fallback: use the last platform's station name
+        return route.lastStationName != null ? lastSegment(route.lastStationName) : "destination_unknown";
+    }
+
+    private static String computeRouteType(RouteInfo route) {
+        // Prefer explicit routeType first
+        if (route.routeType != null) {
+            switch (route.routeType) {
+                case LIGHT_RAIL:
+                    // Use light rail route number if available; else generic label
+                    if (route.lightRailRouteNumber != null && !route.lightRailRouteNumber.isEmpty()) {
+                        return lastSegment(route.lightRailRouteNumber);
+                    }
+                    return "light_rail";
+                case HIGH_SPEED:
+                    return "high_speed";
+                case NORMAL:
+                default:
+                    // For normal routes, return blank type
+                    return "";
+            }
+        }
+        // Fallback: try to use lightRailRouteNumber if set
+        if (route.lightRailRouteNumber != null && !route.lightRailRouteNumber.isEmpty()) {
+            return lastSegment(route.lightRailRouteNumber);
+        }
+        return "";
+    }
+
+    // MTR の多言語名 "中文|English" から最後の言語を取り出して小文字化する
+    private static String lastSegment(String text) {
+        int lastPipeIndex = text.lastIndexOf('|');
+        return (lastPipeIndex != -1 && lastPipeIndex < text.length() - 1
+                ? text.substring(lastPipeIndex + 1)
+                : text).toLowerCase().trim();
+    }
+
+    private static final class RouteTokens {
+        private final int generation;
+        private final AtomicReferenceArray<String> destinations;
+        private final String routeType;
+
+        private RouteTokens(RouteInfo route, int generation) {
+            this.generation = generation;
+            this.destinations = new AtomicReferenceArray<>(Math.max(1, route.platformCount));
+            this.routeType = computeRouteType(route);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.botamochi.easyannouncement.schedule;
+
+import com.botamochi.easyannouncement.schedule.PlatformArrivalIndex.NextArrival;
+import com.botamochi.easyannouncement.schedule.PlatformArrivalIndex.PlatformArrivals;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * 時刻表が変わったプラットフォームの再計算ジョブ。
+ * The pure computation phase of a schedule change: builds the arrival order of the changed platforms
+ * and picks and resolves the next announcement of every affected {@link PlatformGroup}. Only reads
+ * its inputs, which are immutable, so {@link #run} can execute on a worker thread; the results are
+ * committed by {@link AnnounceScheduler} on the server thread.
+ */
+final class ScheduleEvaluation implements Runnable {
+    final RailwaySnapshot snapshot;
+    final long[] changedPlatformIds;
+    final List<PlatformGroup.Key> groupKeys;
+    private final Long2ObjectOpenHashMap<PlatformArrivals> unchanged;
+    private final long now;
+
+    final Long2ObjectOpenHashMap<PlatformArrivals> built = new Long2ObjectOpenHashMap<>();
+    final NextArrival[] nexts;
+    final ResolvedAnnouncement[] resolved;
+    volatile boolean failed;
+
+    ScheduleEvaluation(RailwaySnapshot snapshot, long[] changedPlatformIds, List<PlatformGroup.Key> groupKeys,
+                       Long2ObjectOpenHashMap<PlatformArrivals> unchanged, long now) {
+        this.snapshot = snapshot;
+        this.changedPlatformIds = changedPlatformIds;
+        this.groupKeys = groupKeys;
+        this.unchanged = unchanged;
+        this.now = now;
+        this.nexts = new NextArrival[groupKeys.size()];
+        this.resolved = new ResolvedAnnouncement[groupKeys.size()];
+    }
+
+    @Override
+    public void run() {
+        for (long platformId : changedPlatformIds) {
+            built.put(platformId, PlatformArrivals.build(snapshot, platformId));
+        }
+        LongFunction<PlatformArrivals> lookup = this::lookup;
+        for (int i = 0; i < groupKeys.size(); i++) {
+            long[] platformIds = groupKeys.get(i).getPlatformIds();
+            nexts[i] = new NextArrival();
+            PlatformArrivalIndex.selectNext(lookup, platformIds, now, nexts[i]);
+            resolved[i] = ResolvedAnnouncement.resolve(snapshot, platformIds, nexts[i]);
+        }
+    }
+
+    private PlatformArrivals lookup(long platformId) {
+        PlatformArrivals arrivals = built.get(platformId);
+        if (arrivals == null) arrivals = unchanged.get(platformId);
+        // まだ索引に無いプラットフォームはスナップショットから作る
+        return arrivals != null ? arrivals : PlatformArrivals.build(snapshot, platformId);
+    }
+}
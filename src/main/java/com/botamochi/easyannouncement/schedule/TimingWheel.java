@@ -0,0 +1,221 @@
+package com.botamochi.easyannouncement.schedule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 階層型タイミングホイール。
+ * A hierarchical timing wheel with a resolution of one server tick (50 ms).
+ * Four levels of 64 slots cover about nine days; later deadlines are parked in the
+ * outermost level and cascade down as time passes. Scheduling and cancelling are O(1),
+ * and {@link #advance} only touches the slots of the ticks that elapsed plus the items that are due.
+ *
+ * @param <T> the scheduled item; each item holds at most one deadline at a time
+ */
+public class TimingWheel<T> {
+    public static final long TICK_MILLIS = 50L;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+    // これ以上遅れた場合は 1 tick ずつ進めずにホイール全体を組み直す
+    private static final long REBUILD_THRESHOLD = 1L << (SLOT_BITS * 2);
+
+    private static final class Node<T> {
+        private final T item;
+        private long dueTick;
+        private Node<T> prev;
+        private Node<T> next;
+        private Node<T>[] bucket;
+        private int bucketIndex;
+        private boolean due;
+
+        private Node(T item) {
+            this.item = item;
+        }
+    }
+
+    private final Node<T>[][] wheels;
+    private final Node<T>[] ready;
+    private final Map<T, Node<T>> nodes = new HashMap<>();
+    private final List<Node<T>> dueBuffer = new ArrayList<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long nowMillis) {
+        wheels = new Node[LEVELS][SLOTS];
+        ready = new Node[1];
+        currentTick = nowMillis / TICK_MILLIS;
+    }
+
+    /**
+     * Schedules (or re-schedules) an item. A deadline in the past fires on the next {@link #advance}.
+     */
+    public void schedule(T item, long dueMillis) {
+        Node<T> node = nodes.get(item);
+        if (node == null) {
+            node = new Node<>(item);
+            nodes.put(item, node);
+        } else {
+            unlink(node);
+        }
+        node.due = false;
+        node.dueTick = dueMillis / TICK_MILLIS;
+        insert(node);
+    }
+
+    public void cancel(T item) {
+        Node<T> node = nodes.remove(item);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    public boolean isScheduled(T item) {
+        return nodes.containsKey(item);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMillis} and hands every item whose deadline has passed
+     * to {@code onDue}. Due items are removed before the callback, so it may re-schedule them.
+     */
+    public void advance(long nowMillis, Consumer<T> onDue) {
+        long targetTick = nowMillis / TICK_MILLIS;
+        if (targetTick - currentTick > REBUILD_THRESHOLD) {
+            rebuild(targetTick);
+        }
+        fire(ready, 0, onDue);
+        while (currentTick < targetTick) {
+            currentTick++;
+            int level = 0;
+            // 下位の桁が一周したら上位のスロットを下位へ振り分け直す
+            while (level < LEVELS - 1 && ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK) == 0) {
+                level++;
+                cascade(level, (int) ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK));
+            }
+            fire(wheels[0], (int) (currentTick & SLOT_MASK), onDue);
+        }
+    }
+
+    public void clear() {
+        for (Node<T>[] wheel : wheels) {
+            Arrays.fill(wheel, null);
+        }
+        ready[0] = null;
+        nodes.clear();
+    }
+
+    private void insert(Node<T> node) {
+        long delta = node.dueTick - currentTick;
+        if (delta <= 0) {
+            link(node, ready, 0);
+            return;
+        }
+        long placement = node.dueTick;
+        if (delta > MAX_DELTA) {
+            delta = MAX_DELTA;
+            placement = currentTick + MAX_DELTA;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        link(node, wheels[level], (int) ((placement >> (SLOT_BITS * level)) & SLOT_MASK));
+    }
+
+    private void cascade(int level, int slot) {
+        Node<T> node = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (node != null) {
+            Node<T> next = node.next;
+            node.prev = null;
+            node.next = null;
+            node.bucket = null;
+            if (node.dueTick <= currentTick) {
+                // 現在の tick で発火するスロットへ直接入れる
+                link(node, wheels[0], (int) (currentTick & SLOT_MASK));
+            } else {
+                insert(node);
+            }
+            node = next;
+        }
+    }
+
+    private void fire(Node<T>[] bucket, int index, Consumer<T> onDue) {
+        Node<T> node = bucket[index];
+        if (node == null) return;
+        bucket[index] = null;
+        // コールバックが他の期限到来ノードを再登録・取消しても壊れないよう、先に切り離しておく
+        while (node != null) {
+            Node<T> next = node.next;
+            node.prev = null;
+            node.next = null;
+            node.bucket = null;
+            node.due = true;
+            dueBuffer.add(node);
+            node = next;
+        }
+        for (int i = 0; i < dueBuffer.size(); i++) {
+            Node<T> dueNode = dueBuffer.get(i);
+            if (dueNode.due && nodes.get(dueNode.item) == dueNode) {
+                dueNode.due = false;
+                nodes.remove(dueNode.item);
+                onDue.accept(dueNode.item);
+            }
+        }
+        dueBuffer.clear();
+    }
+
+    private void rebuild(long targetTick) {
+        // 長時間停止した後などは、全ノードを目標時刻基準で入れ直す
+        currentTick = targetTick;
+        for (Node<T> node : nodes.values()) {
+            node.prev = null;
+            node.next = null;
+            node.bucket = null;
+        }
+        for (Node<T>[] wheel : wheels) {
+            Arrays.fill(wheel, null);
+        }
+        ready[0] = null;
+        for (Node<T> node : nodes.values()) {
+            insert(node);
+        }
+    }
+
+    private void link(Node<T> node, Node<T>[] bucket, int index) {
+        node.bucket = bucket;
+        node.bucketIndex = index;
+        node.prev = null;
+        node.next = bucket[index];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        bucket[index] = node;
+    }
+
+    private void unlink(Node<T> node) {
+        if (node.bucket == null) return;
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            node.bucket[node.bucketIndex] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.bucket = null;
+    }
+}
@@ -5,7 +5,9 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.item.ItemStack;
 import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.ScreenHandlerContext;
 import net.minecraft.screen.ScreenHandlerType;
+import net.minecraft.world.World;
 
 public class MainScreenHandler extends ScreenHandler {
     private final AnnounceTile blockEntity;
@@ -21,7 +23,18 @@ public class MainScreenHandler extends ScreenHandler {
 
     @Override
     public boolean canUse(PlayerEntity player) {
-        return true;
+        return blockEntity == null || canEdit(player, blockEntity);
+    }
+
+    /**
+     * True while {@code player} is close enough to the announcer to use it, like a vanilla container,
+     * and allowed to modify blocks there (spawn protection, adventure mode).
+     */
+    public static boolean canEdit(PlayerEntity player, AnnounceTile tile) {
+        World world = tile.getWorld();
+        if (world == null || tile.isRemoved() || player.world != world) return false;
+        if (!player.canModifyAt(world, tile.getPos())) return false;
+        return canUse(ScreenHandlerContext.create(world, tile.getPos()), player, tile.getCachedState().getBlock());
     }
 
     @Override
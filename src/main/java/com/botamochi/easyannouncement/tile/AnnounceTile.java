@@ -1,10 +1,21 @@
 package com.botamochi.easyannouncement.tile;
 
 import com.botamochi.easyannouncement.Easyannouncement;
+import com.botamochi.easyannouncement.data.AnnounceConfig;
+import com.botamochi.easyannouncement.data.AnnounceTemplate;
 import com.botamochi.easyannouncement.data.AnnouncementEntry;
+import com.botamochi.easyannouncement.network.AnnounceConfigSync;
+import com.botamochi.easyannouncement.network.AnnounceProtocol;
 import com.botamochi.easyannouncement.network.AnnounceSendToClient;
+import com.botamochi.easyannouncement.network.AnnounceSyncQueue;
 import com.botamochi.easyannouncement.registry.EATile;
+import com.botamochi.easyannouncement.schedule.AnnounceScheduler;
+import com.botamochi.easyannouncement.schedule.PlatformArrivalIndex.NextArrival;
+import com.botamochi.easyannouncement.schedule.ResolvedAnnouncement;
+import com.botamochi.easyannouncement.schedule.TimingWheel;
 import com.botamochi.easyannouncement.screen.MainScreenHandler;
+import com.botamochi.easyannouncement.world.AnnounceAudience;
+import com.botamochi.easyannouncement.world.AnnounceTemplateRegistry;
 import mtr.data.*;
 import net.fabricmc.fabric.api.screenhandler.v1.ExtendedScreenHandlerFactory;
 import net.minecraft.block.Block;
@@ -14,8 +25,12 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtList;
+import net.minecraft.network.Packet;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.packet.s2c.play.BlockEntityUpdateS2CPacket;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.screen.ScreenHandler;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
@@ -27,45 +42,45 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class AnnounceTile extends BlockEntity implements ExtendedScreenHandlerFactory {
-    private int seconds = 0;  // 放送前の時間
-    private List<Long> selectedPlatformIds = new ArrayList<>();
-    private List<AnnouncementEntry> announcementEntries = new ArrayList<>();
-    private long lastMarkDirtyTime = 0;
-    private static final long MARK_DIRTY_INTERVAL = 1000; // 1 秒ごとに markDirty() を呼び出す
+    // プレイヤーが設定する値はすべてここ (不変・共有)。未設定のタイルは DEFAULT を指す
+    private AnnounceConfig config = AnnounceConfig.DEFAULT;
+    // クライアントのみ: 画面表示用にサーバーから受け取った共有テンプレート
+    private AnnounceTemplate templatePreview;
     public static final Identifier ANNOUNCE_START_ID = new Identifier(Easyannouncement.MOD_ID, "announce_start");
     private long lastAnnounceTriggerTime = 0;
     private static final long MIN_TRIGGER_INTERVAL = 1000; // 例: 1 秒間隔
+    private static final long EXACT_WINDOW_MILLIS = 2 * TimingWheel.TICK_MILLIS; // EXACT の許容誤差 (±1 tick 相当)
+    private static final long PRE_WAKE_MILLIS = 1000; // 発火 1 秒前に再計算する
+    private static final long ANNOUNCEMENT_TIMEOUT = 30000; // 終了通知が来ない場合のタイムアウト
+    private static final long LISTENER_RECHECK_INTERVAL = 1000;
     
-    // Sound configuration fields
-    private float soundVolume = 2.0F;  // Default volume (0.1 - 3.0)
-    private int soundRange = 64;       // Sound range in blocks (16 - 128)
-    private String attenuationType = "LINEAR"; // Sound attenuation type
-    
-    // Bounding box coordinates for announcement area
-    private boolean boundingBoxEnabled = false; // Enable/disable bounding box check
-    private int startX = -100;  // Default start X coordinate
-    private int startY = -64;   // Default start Y coordinate (bedrock level)
-    private int startZ = -100;  // Default start Z coordinate
-    private int endX = 100;     // Default end X coordinate
-    private int endY = 320;     // Default end Y coordinate (build height)
-    private int endZ = 100;     // Default end Z coordinate
-    
-    // Trigger mode - always EXACT (AT_OR_BEFORE/AT_OR_AFTER removed)
-    private String triggerMode = "EXACT";
+    // Trigger mode - EXACT (within ±window of the fire time) or CROSSING (fire time passed since the previous evaluation)
+    public static final String TRIGGER_MODE_EXACT = AnnounceConfig.TRIGGER_MODE_EXACT;
+    public static final String TRIGGER_MODE_CROSSING = AnnounceConfig.TRIGGER_MODE_CROSSING;
     private long lastTriggeredArrivalMillis = -1L;
+    // 差分同期: 未送信の変更フィールドと送信済みリビジョン (保存しない)
+    private int dirtySyncFields = 0;
+    private int syncRevision = 0;
+    private long lastEvaluationMillis = 0L; // 前回評価した時刻 (CROSSING 用, 保存しない)
 
     // Repeat mode - continuously repeat announcement at interval
-    private boolean repeatMode = false;
     private long lastRepeatTime = 0;
     private boolean isAnnouncementPlaying = false;
     private long announcementStartTime = 0;
-    
-    // Exclude players above the block from receiving announcements
-    private boolean excludePlayersAbove = false;
+    private long nextListenerCheckTime = 0;
 
     public AnnounceTile(BlockPos pos, BlockState state) {
         super(EATile.EA_BLOCK_TILE, pos, state);
-        Easyannouncement.registerAnnounceTilePosition(pos);
+    }
+
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        // ワールドが確定した時点で、そのディメンションのレジストリに位置を登録
+        if (!world.isClient) {
+            Easyannouncement.registerAnnounceTilePosition(world, pos);
+            AnnounceTemplateRegistry.setUser((ServerWorld) world, pos, config.templateId);
+        }
     }
 
     public static RailwayData getRailwayData(World world) {
@@ -74,148 +89,50 @@ public class AnnounceTile extends BlockEntity implements ExtendedScreenHandlerFa
 
     @Override
     public ScreenHandler createMenu(int syncId, PlayerInventory inv, PlayerEntity player) {
-        if (player instanceof ServerPlayerEntity serverPlayer) {
-            AnnounceSendToClient.sendToClient(serverPlayer, pos, seconds, selectedPlatformIds, announcementEntries,
-                soundVolume, soundRange, attenuationType, boundingBoxEnabled,
-                startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove);
+        if (player instanceof ServerPlayerEntity serverPlayer && AnnounceProtocol.isVerified(serverPlayer)) {
+            serverPlayer.networkHandler.sendPacket(createUpdatePacket());
         }
         return new MainScreenHandler(syncId, inv, this);
     }
 
     public void startAnnouncement(ServerPlayerEntity player) {
-        if (!world.isClient) {
+        sendAnnouncement(List.of(player));
+    }
+
+    /**
+     * Resolves and encodes announce_start once and sends the same packet to every recipient.
+     */
+    private void sendAnnouncement(List<ServerPlayerEntity> recipients) {
+        if (world instanceof ServerWorld serverWorld) {
             // Ensure we have valid announcement entries
-            if (announcementEntries.isEmpty()) {
+            List<AnnouncementEntry> entries = getEffectiveEntries();
+            if (entries.isEmpty()) {
     
                 return;
             }
-            
-            // Compute chosen schedule with its originating platform
-            RailwayData railwayData = RailwayData.getInstance(world);
-            ChosenSchedule chosen = getNextScheduleEntryWithPlatform(railwayData, selectedPlatformIds);
-            
-            String calculatedDestination;
-            String calculatedRouteType;
-            String hh;
-            String mm;
-            long chosenPlatformId = -1L;
-            long chosenRouteId = -1L;
-            int chosenCurrentStationIndex = -1;
-            
-            if (chosen != null && chosen.entry != null) {
-                chosenPlatformId = chosen.platformId;
-                chosenRouteId = chosen.entry.routeId;
-                chosenCurrentStationIndex = chosen.entry.currentStationIndex;
-                
-                // Derive destination based on the chosen route and current station index
-                final mtr.data.Route route = railwayData != null ? railwayData.dataCache.routeIdMap.get(chosen.entry.routeId) : null;
-                if (route != null) {
-                    String customDest = route.getDestination(Math.min(chosen.entry.currentStationIndex, route.platformIds.size() - 1));
-                    if (customDest != null && !customDest.isEmpty()) {
-                        int lastPipeIndex = customDest.lastIndexOf('|');
-                        calculatedDestination = (lastPipeIndex != -1 && lastPipeIndex < customDest.length() - 1
-                                ? customDest.substring(lastPipeIndex + 1)
-                                : customDest).toLowerCase().trim();
-                    } else {
-                        String finalDestination = null;
-                        long lastPlatformId = route.getLastPlatformId();
-                        mtr.data.Platform lastPlatform = railwayData.dataCache.platformIdMap.get(lastPlatformId);
-                        mtr.data.Station lastStation = railwayData.dataCache.platformIdToStation.get(lastPlatformId);
-                        if (lastPlatform != null && lastStation != null) {
-                            finalDestination = lastStation.name;
-                        }
-                        if (finalDestination != null) {
-                            int lastPipeIndex = finalDestination.lastIndexOf('|');
-                            if (lastPipeIndex != -1 && lastPipeIndex < finalDestination.length() - 1) {
-                                calculatedDestination = finalDestination.substring(lastPipeIndex + 1).toLowerCase().trim();
-                            } else {
-                                calculatedDestination = finalDestination.toLowerCase().trim();
-                            }
-                        } else {
-                            calculatedDestination = "destination_unknown";
-                        }
-                    }
-                    // Derive route type consistent with chosen route
-                    if (route.routeType != null) {
-                        switch (route.routeType) {
-                            case LIGHT_RAIL:
-                                if (route.lightRailRouteNumber != null && !route.lightRailRouteNumber.isEmpty()) {
-                                    int lastPipeIndex = route.lightRailRouteNumber.lastIndexOf('|');
-                                    String code = (lastPipeIndex != -1 && lastPipeIndex < route.lightRailRouteNumber.length() - 1)
-                                            ? route.lightRailRouteNumber.substring(lastPipeIndex + 1)
-                                            : route.lightRailRouteNumber;
-                                    calculatedRouteType = code.toLowerCase().trim();
-                                } else {
-                                    calculatedRouteType = "light_rail";
-                                }
-                                break;
-                            case HIGH_SPEED:
-                                calculatedRouteType = "high_speed";
-                                break;
-                            case NORMAL:
-                            default:
-                                calculatedRouteType = "";
-                                break;
-                        }
-                    } else if (route.lightRailRouteNumber != null && !route.lightRailRouteNumber.isEmpty()) {
-                        int lastPipeIndex = route.lightRailRouteNumber.lastIndexOf('|');
-                        String result;
-                        if (lastPipeIndex != -1 && lastPipeIndex < route.lightRailRouteNumber.length() - 1) {
-                            result = route.lightRailRouteNumber.substring(lastPipeIndex + 1).toLowerCase().trim();
-                        } else {
-                            result = route.lightRailRouteNumber.toLowerCase().trim();
-                        }
-                        calculatedRouteType = result;
-                    } else {
-                        calculatedRouteType = "";
-                    }
-                } else {
-                    calculatedDestination = "route_unknown";
-                    calculatedRouteType = "";
-                }
-                // HH:MM from the chosen entry arrivalMillis + dwell time (departure time)
-                // Get dwell time from the platform
-                long departureMillis = chosen.entry.arrivalMillis;
-                mtr.data.Platform platform = railwayData != null ? railwayData.dataCache.platformIdMap.get(chosen.platformId) : null;
-                if (platform != null) {
-                    // dwellTime is in seconds, convert to milliseconds
-                    departureMillis = chosen.entry.arrivalMillis + (platform.getDwellTime() * 1000L);
-                }
-                java.time.ZonedDateTime zdt = java.time.Instant.ofEpochMilli(departureMillis).atZone(java.time.ZoneId.systemDefault());
-                hh = String.format("%02d", zdt.getHour());
-                mm = String.format("%02d", zdt.getMinute());
-            } else {
-                // Fallback to existing computations if no schedule found
-                String calculatedDestinationFallback = getDestination(selectedPlatformIds);
-                String calculatedRouteTypeFallback = getRouteType(selectedPlatformIds);
-                String[] hhmm = getNextArrivalHhMm(world, selectedPlatformIds);
-                hh = hhmm[0];
-                mm = hhmm[1];
-                calculatedDestination = calculatedDestinationFallback;
-                calculatedRouteType = calculatedRouteTypeFallback;
-            }
-            
-            AnnounceSendToClient.sendAnnounceStartPacket(player, selectedPlatformIds, pos, announcementEntries, calculatedDestination, calculatedRouteType, hh, mm, chosenPlatformId, chosenRouteId, chosenCurrentStationIndex);
+
+            // 行先・種別・時刻は同じプラットフォーム集合のグループで一度だけ解決済み
+            ResolvedAnnouncement resolved = AnnounceScheduler.get(serverWorld).resolve(this, System.currentTimeMillis());
+            Packet<?> packet = AnnounceSendToClient.createAnnounceStartPacket(config.getPlatformIds(), pos, entries,
+                    resolved.destination, resolved.routeType, resolved.hh, resolved.mm,
+                    resolved.chosenPlatformId, resolved.chosenRouteId, resolved.chosenCurrentStationIndex);
+            AnnounceSendToClient.sendAnnounceStartPacket(recipients, packet);
         }
     }
 
-    public void tick(World world, BlockPos pos, BlockState state) { // インスタンスメソッドに変更
-        if (world.isClient || world.getServer().isStopping()) return; // ポーズ中は早期リターン
-
-        long currentTime = System.currentTimeMillis();
+    /**
+     * Called by {@link AnnounceScheduler} when this announcer's wake-up time is due.
+     * Fires the announcement if its trigger condition holds at {@code currentTime}.
+     */
+    public void onTriggerWake(ServerWorld world, long currentTime) {
+        if (world.getServer().isStopping()) return;
 
         // Handle repeat mode - wait for announcement to finish, then repeat after interval
-        if (repeatMode) {
-            // User-specified interval in milliseconds
-            long repeatIntervalMs = (long) getSeconds() * 1000L;
-            if (repeatIntervalMs <= 0) {
-                repeatIntervalMs = 60000; // Default to 60 seconds minimum
-            }
-
+        if (config.repeatMode) {
             // Check if we're currently waiting for announcement to finish
             if (isAnnouncementPlaying) {
                 // Fallback: if no client notification comes for too long (30 seconds), assume finished
-                if (currentTime - announcementStartTime >= 30000) {
+                if (currentTime - announcementStartTime >= ANNOUNCEMENT_TIMEOUT) {
                     isAnnouncementPlaying = false;
                     lastRepeatTime = currentTime;
                 }
@@ -223,172 +140,131 @@ public class AnnounceTile extends BlockEntity implements ExtendedScreenHandlerFa
             }
 
             // Check if it's time to repeat (counting from when last announcement finished)
-            if (currentTime - lastRepeatTime >= repeatIntervalMs) {
-                if (currentTime - lastAnnounceTriggerTime >= MIN_TRIGGER_INTERVAL) {
-                    if (world.getServer() != null) {
-                        // Count players who would receive the announcement
-                        int playerCount = 0;
-                        for (ServerPlayerEntity player : world.getServer().getPlayerManager().getPlayerList()) {
-                            if (excludePlayersAbove && player.getBlockY() > pos.getY()) {
-                                continue;
-                            }
-                            playerCount++;
-                        }
-
-                        // Only trigger if there are players to notify
-                        if (playerCount > 0) {
-                            for (ServerPlayerEntity player : world.getServer().getPlayerManager().getPlayerList()) {
-                                // Skip players above the block if this setting is enabled
-                                if (excludePlayersAbove && player.getBlockY() > pos.getY()) {
-                                    continue;
-                                }
-                                startAnnouncement(player);
-                            }
-                            // Update shared state AFTER all players have been notified
-                            lastAnnounceTriggerTime = currentTime;
-                            announcementStartTime = currentTime;
-                            isAnnouncementPlaying = true;
-                        }
-                    }
+            if (currentTime - lastRepeatTime >= getRepeatIntervalMillis()
+                    && currentTime - lastAnnounceTriggerTime >= MIN_TRIGGER_INTERVAL) {
+                if (broadcastAnnouncement()) {
+                    lastAnnounceTriggerTime = currentTime;
+                    announcementStartTime = currentTime;
+                    isAnnouncementPlaying = true;
+                } else {
+                    // 聞く人がいない場合は少し待ってから再確認する
+                    nextListenerCheckTime = currentTime + LISTENER_RECHECK_INTERVAL;
                 }
             }
             return; // Skip normal trigger mode when in repeat mode
         }
 
         // Normal trigger mode (not repeat mode)
-        RailwayData railwayData = RailwayData.getInstance(world);
-        final ScheduleEntry next = getNextScheduleEntry(railwayData, selectedPlatformIds);
-        if (next != null) {
-            long ticksUntilArrival = (next.arrivalMillis - currentTime) / 50; // ms -> ticks
-            long threshold = (long) getSeconds() * 20L;
-            // EXACT mode: 使用範圍比較而非精確匹配，避免時間精度問題，允許 ±1 tick 的誤差範圍
-            boolean conditionMet = Math.abs(ticksUntilArrival - threshold) <= 1;
-            if (conditionMet && lastTriggeredArrivalMillis != next.arrivalMillis) {
-                if (currentTime - lastAnnounceTriggerTime >= MIN_TRIGGER_INTERVAL) {
-                    if (world.getServer() != null) {
-                        // Count players who would receive the announcement
-                        int playerCount = 0;
-                        for (ServerPlayerEntity player : world.getServer().getPlayerManager().getPlayerList()) {
-                            if (excludePlayersAbove && player.getBlockY() > pos.getY()) {
-                                continue;
-                            }
-                            playerCount++;
-                        }
-
-                        // Only trigger if there are players to notify
-                        if (playerCount > 0) {
-                            for (ServerPlayerEntity player : world.getServer().getPlayerManager().getPlayerList()) {
-                                // Skip players above the block if this setting is enabled
-                                if (excludePlayersAbove && player.getBlockY() > pos.getY()) {
-                                    continue;
-                                }
-                                startAnnouncement(player);
-                            }
-                            // Update shared state AFTER all players have been notified
-                            lastAnnounceTriggerTime = currentTime;
-                            lastTriggeredArrivalMillis = next.arrivalMillis;
-                        }
-                    }
+        final NextArrival chosen = AnnounceScheduler.get(world).getNextArrival(this, currentTime);
+        // 初回は EXACT と同じ幅だけ遡って評価したことにする
+        final long previousEvaluation = lastEvaluationMillis > 0 ? lastEvaluationMillis : currentTime - EXACT_WINDOW_MILLIS;
+        lastEvaluationMillis = currentTime;
+        if (chosen != null) {
+            final long arrivalMillis = chosen.getArrivalMillis();
+            long fireAt = arrivalMillis - (long) getSeconds() * 1000L;
+            boolean conditionMet;
+            if (isCrossingMode()) {
+                // CROSSING mode: 前回の評価から今回までの間に発火時刻を跨いだら発火。tick が飛んでも取りこぼさない
+                conditionMet = previousEvaluation < fireAt && fireAt <= currentTime;
+            } else {
+                // EXACT mode: 使用範圍比較而非精確匹配，避免時間精度問題，允許 ±1 tick 的誤差範圍
+                conditionMet = Math.abs(currentTime - fireAt) <= EXACT_WINDOW_MILLIS;
+            }
+            if (conditionMet && lastTriggeredArrivalMillis != arrivalMillis
+                    && currentTime - lastAnnounceTriggerTime >= MIN_TRIGGER_INTERVAL) {
+                if (broadcastAnnouncement()) {
+                    lastAnnounceTriggerTime = currentTime;
+                    lastTriggeredArrivalMillis = arrivalMillis;
                 }
             }
         }
     }
 
-    public static void tick(World world, BlockPos pos, BlockState state, AnnounceTile announceTile) { // 追加: AnnounceTileインスタンスからtickメソッドを呼ぶためのstaticメソッド
-        announceTile.tick(world, pos, state);
-    }
+    /**
+     * Returns when {@link #onTriggerWake} should run next, or -1 if there is nothing to wait for
+     * until the schedules of the selected platforms change.
+     */
+    public long getNextWakeMillis(NextArrival chosen, long currentTime) {
+        if (config.repeatMode) {
+            if (isAnnouncementPlaying) {
+                return announcementStartTime + ANNOUNCEMENT_TIMEOUT;
+            }
+            long wake = Math.max(lastRepeatTime + getRepeatIntervalMillis(), lastAnnounceTriggerTime + MIN_TRIGGER_INTERVAL);
+            return Math.max(wake, nextListenerCheckTime);
+        }
 
-    private static boolean checkTrainApproaching(World world, long platformId, int secondsBefore) {
-        RailwayData railwayData = RailwayData.getInstance(world);
-        if (railwayData == null) return false;
+        if (chosen == null) return -1L;
+        final long arrivalMillis = chosen.getArrivalMillis();
+        long fireAt = arrivalMillis - (long) getSeconds() * 1000L;
+        final boolean crossing = isCrossingMode();
+        final boolean missed = crossing
+                ? lastEvaluationMillis > 0 && fireAt <= lastEvaluationMillis
+                : currentTime - fireAt > EXACT_WINDOW_MILLIS;
+        if (lastTriggeredArrivalMillis == arrivalMillis || missed) {
+            // この列車の放送は済んだか間に合わなかった。到着後に次の列車を評価する
+            return arrivalMillis + 1L;
+        }
+        // CROSSING は発火時刻ちょうどに起きれば良い (遅れて起きても跨ぎ判定で拾える)
+        long wake = Math.max(crossing ? fireAt : fireAt - TimingWheel.TICK_MILLIS, lastAnnounceTriggerTime + MIN_TRIGGER_INTERVAL);
+        if (wake - currentTime > PRE_WAKE_MILLIS) {
+            // 到着時刻のずれを吸収するため、直前に一度起きて再計算する
+            return wake - PRE_WAKE_MILLIS;
+        }
+        return wake;
+    }
 
-        List<ScheduleEntry> schedules = railwayData.getSchedulesAtPlatform(platformId);
-        if (schedules == null || schedules.isEmpty()) return false;
+    /**
+     * True if a wake-up at {@code currentTime} may fire right away, so the scheduler must not defer it
+     * to a later tick. Pre-wakes and re-arms far from the fire time are not imminent.
+     */
+    public boolean isTriggerImminent(NextArrival chosen, long currentTime) {
+        if (config.repeatMode) return true;
+        if (chosen == null || lastTriggeredArrivalMillis == chosen.getArrivalMillis()) return false;
+        long fireAt = chosen.getArrivalMillis() - (long) getSeconds() * 1000L;
+        return fireAt - currentTime <= PRE_WAKE_MILLIS;
+    }
 
-        long currentTime = System.currentTimeMillis();
-        for (ScheduleEntry entry : schedules) {
-            if ((entry.arrivalMillis - currentTime) / 50 == secondsBefore * 20) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Platforms whose schedule changes must re-arm this announcer; also the key of its {@link com.botamochi.easyannouncement.schedule.PlatformGroup}.
+     * Sorted and without duplicates; shared with the config, so callers must not modify it.
+     */
+    public long[] getWatchedPlatformIds() {
+        return config.getWatchedPlatformIds();
     }
 
-    private ScheduleEntry getNextScheduleEntry(RailwayData railwayData, List<Long> platformIds) {
-        if (railwayData == null || platformIds == null || platformIds.isEmpty()) return null;
+    private boolean isCrossingMode() {
+        return TRIGGER_MODE_CROSSING.equals(config.triggerMode);
+    }
 
-        final List<ScheduleEntry> all = new ArrayList<>();
-        for (long pid : platformIds) {
-            final List<ScheduleEntry> schedules = railwayData.getSchedulesAtPlatform(pid);
-            if (schedules != null) {
-                all.addAll(schedules);
-            }
-        }
-        if (all.isEmpty()) return null;
-
-        final long now = System.currentTimeMillis();
-        all.removeIf(se -> se.arrivalMillis < now);
-        if (all.isEmpty()) return null;
-
-        all.sort((a, b) -> Long.compare(a.arrivalMillis, b.arrivalMillis));
-
-        // Prefer non-terminating trains (like PIDS), fallback to terminating if none
-        ScheduleEntry best = null;
-        ScheduleEntry bestTerminating = null;
-        for (final ScheduleEntry se : all) {
-            final Route r = railwayData.dataCache.routeIdMap.get(se.routeId);
-            if (r == null) continue;
-            final boolean isTerminating = se.currentStationIndex >= r.platformIds.size() - 1;
-            if (!isTerminating) {
-                best = se;
-                break;
-            } else if (bestTerminating == null) {
-                bestTerminating = se;
-            }
+    private long getRepeatIntervalMillis() {
+        // User-specified interval in milliseconds
+        long repeatIntervalMs = (long) getSeconds() * 1000L;
+        if (repeatIntervalMs <= 0) {
+            repeatIntervalMs = 60000; // Default to 60 seconds minimum
         }
-        return best != null ? best : bestTerminating;
+        return repeatIntervalMs;
     }
 
-    // Helper class and method to return chosen schedule with its originating platformId
-    private static final class ChosenSchedule {
-        private final long platformId;
-        private final ScheduleEntry entry;
-        private ChosenSchedule(long platformId, ScheduleEntry entry) {
-            this.platformId = platformId;
-            this.entry = entry;
-        }
+    /**
+     * Sends announce_start to every player that can hear this announcer (see {@link AnnounceAudience}).
+     *
+     * @return false if nobody was notified
+     */
+    private boolean broadcastAnnouncement() {
+        if (!(world instanceof ServerWorld serverWorld)) return false;
+        // 範囲・エリア・ディメンションで受信者を絞ってからエンコードする
+        List<ServerPlayerEntity> recipients = AnnounceAudience.select(serverWorld, this);
+
+        // Only trigger if there are players to notify
+        if (recipients.isEmpty()) return false;
+        sendAnnouncement(recipients);
+        return true;
     }
 
-    private ChosenSchedule getNextScheduleEntryWithPlatform(RailwayData railwayData, List<Long> platformIds) {
-        if (railwayData == null || platformIds == null || platformIds.isEmpty()) return null;
-        final java.util.List<ChosenSchedule> all = new java.util.ArrayList<>();
-        final long now = System.currentTimeMillis();
-        for (long pid : platformIds) {
-            final java.util.List<ScheduleEntry> schedules = railwayData.getSchedulesAtPlatform(pid);
-            if (schedules != null) {
-                for (ScheduleEntry se : schedules) {
-                    if (se.arrivalMillis >= now) {
-                        all.add(new ChosenSchedule(pid, se));
-                    }
-                }
-            }
-        }
-        if (all.isEmpty()) return null;
-        all.sort((a, b) -> Long.compare(a.entry.arrivalMillis, b.entry.arrivalMillis));
-        ChosenSchedule best = null;
-        ChosenSchedule bestTerminating = null;
-        for (final ChosenSchedule cs : all) {
-            final Route r = railwayData.dataCache.routeIdMap.get(cs.entry.routeId);
-            if (r == null) continue;
-            final boolean isTerminating = cs.entry.currentStationIndex >= r.platformIds.size() - 1;
-            if (!isTerminating) {
-                best = cs;
-                break;
-            } else if (bestTerminating == null) {
-                bestTerminating = cs;
-            }
+    private void rearmTrigger() {
+        if (world instanceof ServerWorld serverWorld && !isRemoved()) {
+            AnnounceScheduler.get(serverWorld).arm(this);
         }
-        return best != null ? best : bestTerminating;
     }
 
     @Override
@@ -396,155 +272,90 @@ public class AnnounceTile extends BlockEntity implements ExtendedScreenHandlerFa
         return Text.translatable(getCachedState().getBlock().getTranslationKey());
     }
 
+    /**
+     * A boxed copy of the selected platforms for GUI code. Server code reads {@link #getConfig} instead.
+     */
     public List<Long> getSelectedPlatformIds() {
-        return new ArrayList<>(selectedPlatformIds);
-    }
-
-    public void setSelectedPlatformIds(List<Long> selectedPlatformIds) {
-        if (!this.selectedPlatformIds.equals(selectedPlatformIds)) {
-            this.selectedPlatformIds = new ArrayList<>(selectedPlatformIds);
-            markDirty();
-        }
+        return config.getPlatformIdList();
     }
 
     public int getSeconds() {
-        return seconds;
+        return config.seconds;
     }
 
-    public void setSeconds(int seconds) {
-        if (this.seconds != seconds) {
-            this.seconds = seconds;
-            markDirty();
-        }
-    }
-
-    // Sound configuration getters and setters
+    // Sound configuration getters
     public float getSoundVolume() {
-        return soundVolume;
-    }
-
-    public void setSoundVolume(float soundVolume) {
-        if (this.soundVolume != soundVolume) {
-            this.soundVolume = Math.max(0.1F, Math.min(3.0F, soundVolume)); // Clamp between 0.1 and 3.0
-            markDirty();
-        }
+        return config.volume;
     }
 
     public int getSoundRange() {
-        return soundRange;
-    }
-
-    public void setSoundRange(int soundRange) {
-        if (this.soundRange != soundRange) {
-            this.soundRange = Math.max(16, Math.min(128, soundRange)); // Clamp between 16 and 128
-            markDirty();
-        }
+        return config.range;
     }
 
     public String getAttenuationType() {
-        return attenuationType;
+        return config.attenuationType;
     }
 
-    public void setAttenuationType(String attenuationType) {
-        if (!this.attenuationType.equals(attenuationType)) {
-            this.attenuationType = attenuationType;
-            markDirty();
-        }
-    }
+    // Bounding box coordinate getters
+    public int getStartX() { return config.startX; }
+    public int getStartY() { return config.startY; }
+    public int getStartZ() { return config.startZ; }
+    public int getEndX() { return config.endX; }
+    public int getEndY() { return config.endY; }
+    public int getEndZ() { return config.endZ; }
 
-    // Bounding box coordinate getters and setters
-    public int getStartX() { return startX; }
-    public void setStartX(int startX) {
-        if (this.startX != startX) {
-            this.startX = startX;
-            markDirty();
-        }
-    }
+    public boolean isBoundingBoxEnabled() { return config.boundingBoxEnabled; }
 
-    public int getStartY() { return startY; }
-    public void setStartY(int startY) {
-        if (this.startY != startY) {
-            this.startY = startY;
-            markDirty();
-        }
-    }
+    public String getTriggerMode() { return config.triggerMode; }
 
-    public int getStartZ() { return startZ; }
-    public void setStartZ(int startZ) {
-        if (this.startZ != startZ) {
-            this.startZ = startZ;
-            markDirty();
-        }
-    }
+    public boolean isRepeatMode() { return config.repeatMode; }
 
-    public int getEndX() { return endX; }
-    public void setEndX(int endX) {
-        if (this.endX != endX) {
-            this.endX = endX;
-            markDirty();
+    // Reset repeat timer and state when mode changes
+    private void resetRepeatState() {
+        if (config.repeatMode) {
+            // Turning repeat mode ON
+            lastRepeatTime = System.currentTimeMillis();
+        } else {
+            // Turning repeat mode OFF - reset all repeat-related state
+            isAnnouncementPlaying = false;
+            announcementStartTime = 0;
         }
     }
 
-    public int getEndY() { return endY; }
-    public void setEndY(int endY) {
-        if (this.endY != endY) {
-            this.endY = endY;
-            markDirty();
-        }
-    }
+    public boolean isExcludePlayersAbove() { return config.excludePlayersAbove; }
 
-    public int getEndZ() { return endZ; }
-    public void setEndZ(int endZ) {
-        if (this.endZ != endZ) {
-            this.endZ = endZ;
-            markDirty();
-        }
+    /**
+     * The current configuration. Immutable and shared, so reading it never copies.
+     */
+    public AnnounceConfig getConfig() {
+        return config;
     }
 
-    public boolean isBoundingBoxEnabled() { return boundingBoxEnabled; }
+    /**
+     * Replaces the whole configuration in one step. Only the fields that differ are marked for sync, the tile is
+     * dirtied once, and the trigger is re-armed only if a timing-relevant field changed.
+     *
+     * @return the {@link AnnounceConfigSync} field bits that changed
+     */
+    public int applyConfig(AnnounceConfig config) {
+        int changed = this.config.diff(config);
+        if (changed == 0) return 0;
 
-    public void setBoundingBoxEnabled(boolean boundingBoxEnabled) {
-        if (this.boundingBoxEnabled != boundingBoxEnabled) {
-            this.boundingBoxEnabled = boundingBoxEnabled;
-            markDirty();
+        this.config = config.shared();
+        if ((changed & AnnounceConfigSync.FIELD_REPEAT_MODE) != 0) {
+            resetRepeatState();
         }
-    }
 
-    public String getTriggerMode() { return triggerMode; }
-
-    public void setTriggerMode(String triggerMode) {
-        if (triggerMode == null) return;
-        if (!triggerMode.equals(this.triggerMode)) {
-            this.triggerMode = triggerMode;
-            markDirty();
+        if ((changed & AnnounceConfigSync.FIELD_TEMPLATE) != 0 && world instanceof ServerWorld serverWorld) {
+            AnnounceTemplateRegistry.setUser(serverWorld, pos, config.templateId);
         }
-    }
-
-    public boolean isRepeatMode() { return repeatMode; }
 
-    public void setRepeatMode(boolean repeatMode) {
-        if (this.repeatMode != repeatMode) {
-            this.repeatMode = repeatMode;
-            // Reset repeat timer and state when mode changes
-            if (repeatMode) {
-                // Turning repeat mode ON
-                lastRepeatTime = System.currentTimeMillis();
-            } else {
-                // Turning repeat mode OFF - reset all repeat-related state
-                isAnnouncementPlaying = false;
-                announcementStartTime = 0;
-            }
-            markDirty();
-        }
-    }
-    
-    public boolean isExcludePlayersAbove() { return excludePlayersAbove; }
-    
-    public void setExcludePlayersAbove(boolean excludePlayersAbove) {
-        if (this.excludePlayersAbove != excludePlayersAbove) {
-            this.excludePlayersAbove = excludePlayersAbove;
-            markDirty();
+        dirtySyncFields |= changed;
+        markDirty();
+        if ((changed & AnnounceConfig.TIMING_FIELDS) != 0) {
+            rearmTrigger();
         }
+        return changed;
     }
 
     /**
@@ -552,113 +363,110 @@ public class AnnounceTile extends BlockEntity implements ExtendedScreenHandlerFa
      * This is used for accurate repeat timing
      */
     public void onAnnouncementFinished() {
-        if (repeatMode && isAnnouncementPlaying) {
+        if (config.repeatMode && isAnnouncementPlaying) {
             isAnnouncementPlaying = false;
             lastRepeatTime = System.currentTimeMillis(); // Start counting interval from when announcement actually finished
+            rearmTrigger();
         }
     }
 
     @Override
     public void writeNbt(NbtCompound nbt) {
         super.writeNbt(nbt);
-        nbt.putLongArray("PlatformId", selectedPlatformIds.stream().mapToLong(Long::longValue).toArray());
-        nbt.putInt("TimeBeforeAnnounce", seconds);
+        nbt.putLongArray("PlatformId", config.getPlatformIds());
+        nbt.putInt("TimeBeforeAnnounce", config.seconds);
         
-        // Save announcement entries
-        NbtList entriesList = new NbtList();
-        for (AnnouncementEntry entry : announcementEntries) {
-            NbtCompound entryNbt = new NbtCompound();
-            entry.writeNbt(entryNbt);
-            entriesList.add(entryNbt);
+        // Save announcement entries (テンプレート参照中は ID だけ)
+        if (config.usesTemplate()) {
+            nbt.putInt("TemplateId", config.templateId);
+        } else {
+            NbtList entriesList = new NbtList();
+            for (AnnouncementEntry entry : config.entries) {
+                NbtCompound entryNbt = new NbtCompound();
+                entry.writeNbt(entryNbt);
+                entriesList.add(entryNbt);
+            }
+            nbt.put("AnnouncementEntries", entriesList);
         }
-        nbt.put("AnnouncementEntries", entriesList);
         
         // Legacy support for old selectedJson format
-        if (!announcementEntries.isEmpty()) {
-            nbt.putString("SelectedJson", announcementEntries.get(0).getJsonName());
+        if (!config.entries.isEmpty()) {
+            nbt.putString("SelectedJson", config.entries.get(0).getJsonName());
         }
         
         // Save sound configuration
-        nbt.putFloat("SoundVolume", soundVolume);
-        nbt.putInt("SoundRange", soundRange);
-        nbt.putString("AttenuationType", attenuationType);
+        nbt.putFloat("SoundVolume", config.volume);
+        nbt.putInt("SoundRange", config.range);
+        nbt.putString("AttenuationType", config.attenuationType);
         
         // Save bounding box coordinates
-        nbt.putBoolean("BoundingBoxEnabled", boundingBoxEnabled);
-        nbt.putInt("StartX", startX);
-        nbt.putInt("StartY", startY);
-        nbt.putInt("StartZ", startZ);
-        nbt.putInt("EndX", endX);
-        nbt.putInt("EndY", endY);
-        nbt.putInt("EndZ", endZ);
+        nbt.putBoolean("BoundingBoxEnabled", config.boundingBoxEnabled);
+        nbt.putInt("StartX", config.startX);
+        nbt.putInt("StartY", config.startY);
+        nbt.putInt("StartZ", config.startZ);
+        nbt.putInt("EndX", config.endX);
+        nbt.putInt("EndY", config.endY);
+        nbt.putInt("EndZ", config.endZ);
         
         // Save trigger mode
-        nbt.putString("TriggerMode", triggerMode);
+        nbt.putString("TriggerMode", config.triggerMode);
 
         // Save repeat mode
-        nbt.putBoolean("RepeatMode", repeatMode);
+        nbt.putBoolean("RepeatMode", config.repeatMode);
         
         // Save exclude players above setting
-        nbt.putBoolean("ExcludePlayersAbove", excludePlayersAbove);
+        nbt.putBoolean("ExcludePlayersAbove", config.excludePlayersAbove);
     }
 
     @Override
     public void readNbt(NbtCompound nbt) {
         super.readNbt(nbt);
-        selectedPlatformIds.clear();
-        for (long id : nbt.getLongArray("PlatformId")) {
-            selectedPlatformIds.add(id);
-        }
-        seconds = nbt.getInt("TimeBeforeAnnounce");
+        long[] platformIds = nbt.getLongArray("PlatformId");
         
         // Read announcement entries
-        announcementEntries.clear();
+        List<AnnouncementEntry> entries = new ArrayList<>();
         if (nbt.contains("AnnouncementEntries")) {
             NbtList entriesList = nbt.getList("AnnouncementEntries", 10); // 10 = NbtCompound type
             for (int i = 0; i < entriesList.size(); i++) {
                 NbtCompound entryNbt = entriesList.getCompound(i);
-                AnnouncementEntry entry = new AnnouncementEntry();
-                entry.readNbt(entryNbt);
-                announcementEntries.add(entry);
+                entries.add(AnnouncementEntry.fromNbt(entryNbt));
             }
         } else if (nbt.contains("SelectedJson")) {
             // Legacy support: convert old selectedJson to new format
             String legacyJson = nbt.getString("SelectedJson");
             if (!legacyJson.isEmpty()) {
-                announcementEntries.add(new AnnouncementEntry(legacyJson, 0));
+                entries.add(new AnnouncementEntry(legacyJson, 0));
             }
         }
         
+        int templateId = nbt.getInt("TemplateId");
+
         // Safety check: ensure we always have at least one default entry for very old blocks
-        if (announcementEntries.isEmpty() && !selectedPlatformIds.isEmpty()) {
-            announcementEntries.add(new AnnouncementEntry("station_bell", 0));
+        if (entries.isEmpty() && platformIds.length > 0 && templateId == AnnounceConfig.NO_TEMPLATE) {
+            entries.add(new AnnouncementEntry("station_bell", 0));
         }
         
-        // Load sound configuration with defaults
-        soundVolume = nbt.contains("SoundVolume") ? nbt.getFloat("SoundVolume") : 2.0F;
-        soundRange = nbt.contains("SoundRange") ? nbt.getInt("SoundRange") : 64;
-        attenuationType = nbt.contains("AttenuationType") ? nbt.getString("AttenuationType") : "LINEAR";
-        
-        // Load bounding box coordinates with defaults
-        boundingBoxEnabled = nbt.contains("BoundingBoxEnabled") ? nbt.getBoolean("BoundingBoxEnabled") : false;
-        startX = nbt.contains("StartX") ? nbt.getInt("StartX") : -100;
-        startY = nbt.contains("StartY") ? nbt.getInt("StartY") : -64;
-        startZ = nbt.contains("StartZ") ? nbt.getInt("StartZ") : -100;
-        endX = nbt.contains("EndX") ? nbt.getInt("EndX") : 100;
-        endY = nbt.contains("EndY") ? nbt.getInt("EndY") : 320;
-        endZ = nbt.contains("EndZ") ? nbt.getInt("EndZ") : 100;
-        
-        // Load trigger mode
-        triggerMode = nbt.contains("TriggerMode") ? nbt.getString("TriggerMode") : "EXACT";
-
-        // Load repeat mode
-        repeatMode = nbt.contains("RepeatMode") ? nbt.getBoolean("RepeatMode") : false;
-
-        // Load exclude players above setting
-        excludePlayersAbove = nbt.contains("ExcludePlayersAbove") ? nbt.getBoolean("ExcludePlayersAbove") : false;
+        // Missing keys fall back to the defaults
+        AnnounceConfig defaults = AnnounceConfig.DEFAULT;
+        config = new AnnounceConfig(nbt.getInt("TimeBeforeAnnounce"), platformIds, entries,
+            nbt.contains("SoundVolume") ? nbt.getFloat("SoundVolume") : defaults.volume,
+            nbt.contains("SoundRange") ? nbt.getInt("SoundRange") : defaults.range,
+            nbt.contains("AttenuationType") ? nbt.getString("AttenuationType") : defaults.attenuationType,
+            nbt.contains("BoundingBoxEnabled") ? nbt.getBoolean("BoundingBoxEnabled") : defaults.boundingBoxEnabled,
+            nbt.contains("StartX") ? nbt.getInt("StartX") : defaults.startX,
+            nbt.contains("StartY") ? nbt.getInt("StartY") : defaults.startY,
+            nbt.contains("StartZ") ? nbt.getInt("StartZ") : defaults.startZ,
+            nbt.contains("EndX") ? nbt.getInt("EndX") : defaults.endX,
+            nbt.contains("EndY") ? nbt.getInt("EndY") : defaults.endY,
+            nbt.contains("EndZ") ? nbt.getInt("EndZ") : defaults.endZ,
+            nbt.contains("TriggerMode") ? nbt.getString("TriggerMode") : defaults.triggerMode,
+            nbt.contains("RepeatMode") ? nbt.getBoolean("RepeatMode") : defaults.repeatMode,
+            nbt.contains("ExcludePlayersAbove") ? nbt.getBoolean("ExcludePlayersAbove") : defaults.excludePlayersAbove,
+            templateId).shared();
 
         // Reset runtime-only state
         lastTriggeredArrivalMillis = -1L;
+        lastEvaluationMillis = 0L;
     }
 
     @Override
@@ -668,51 +476,110 @@ public class AnnounceTile extends BlockEntity implements ExtendedScreenHandlerFa
 
     @Override
     public void markDirty() {
-        long currentTime = System.currentTimeMillis();
         // Always mark the chunk as dirty so changes are persisted to disk
         super.markDirty();
-        // Rate-limit only the world updates and network sync to avoid spam
-        if (world != null && !world.isClient) {
-            if (currentTime - lastMarkDirtyTime >= MARK_DIRTY_INTERVAL) {
-                world.updateListeners(pos, world.getBlockState(pos), world.getBlockState(pos), Block.NOTIFY_ALL);
-                if (world.getServer() != null) {
-                    for (ServerPlayerEntity player : world.getServer().getPlayerManager().getPlayerList()) {
-                        AnnounceSendToClient.sendToClient(player, pos, seconds, selectedPlatformIds, announcementEntries,
-                            soundVolume, soundRange, attenuationType, boundingBoxEnabled,
-                            startX, startY, startZ, endX, endY, endZ, triggerMode, repeatMode, excludePlayersAbove);
-                    }
-                }
-                lastMarkDirtyTime = currentTime;
-            }
+        // 同期はティックの終わりにまとめて、チャンクを追跡しているプレイヤーにだけ送る
+        if (world instanceof ServerWorld serverWorld) {
+            AnnounceSyncQueue.mark(serverWorld, this);
         }
     }
 
+    /**
+     * Queues a full announce_update for players with the screen open, after the template this announcer uses
+     * got a new version. The config itself is unchanged, so nothing is saved.
+     */
+    public void markTemplateChanged() {
+        if (world instanceof ServerWorld serverWorld) {
+            dirtySyncFields |= AnnounceConfigSync.FIELD_TEMPLATE;
+            AnnounceSyncQueue.mark(serverWorld, this);
+        }
+    }
+
+    /**
+     * Returns the fields changed since the last call (see {@link AnnounceConfigSync}) and clears them.
+     */
+    public int takeDirtySyncFields() {
+        int fields = dirtySyncFields;
+        dirtySyncFields = 0;
+        return fields;
+    }
+
+    /**
+     * Advances the sync revision for a delta that is about to be sent.
+     */
+    public int nextSyncRevision() {
+        return ++syncRevision;
+    }
+
+    // チャンク読み込み時とブロック更新時に、バニラの仕組みで追跡中のプレイヤーへ設定を送る
+    @Override
+    public Packet<ClientPlayPacketListener> toUpdatePacket() {
+        return BlockEntityUpdateS2CPacket.create(this);
+    }
+
+    @Override
+    public NbtCompound toInitialChunkDataNbt() {
+        return createNbt();
+    }
+
+    /**
+     * Encodes the current configuration as a full announce_update snapshot at the current revision.
+     */
+    public Packet<?> createUpdatePacket() {
+        return AnnounceSendToClient.createUpdatePacket(pos, config, syncRevision);
+    }
+
+    /**
+     * The announcer's own announcement sequence; empty while it uses a template.
+     * Unmodifiable and shared with the config, so it is not copied.
+     */
     public List<AnnouncementEntry> getAnnouncementEntries() {
-        return new ArrayList<>(announcementEntries);
+        return config.entries;
+    }
+
+    /**
+     * The sequence to play: the shared template's entries if the config references one, otherwise its own.
+     * Templates only exist on the server.
+     */
+    public List<AnnouncementEntry> getEffectiveEntries() {
+        return config.usesTemplate() ? AnnounceTemplateRegistry.getEntries(config.templateId) : config.entries;
+    }
+
+    /**
+     * Client only: the shared template this announcer uses, as last sent with announce_update, or {@code null}
+     * if it uses none or the server had no such template.
+     */
+    public AnnounceTemplate getTemplatePreview() {
+        return templatePreview != null && templatePreview.id == config.templateId ? templatePreview : null;
+    }
+
+    public void setTemplatePreview(AnnounceTemplate templatePreview) {
+        this.templatePreview = templatePreview;
     }
 
     public void setAnnouncementEntries(List<AnnouncementEntry> entries) {
-        if (!this.announcementEntries.equals(entries)) {
-            this.announcementEntries = new ArrayList<>(entries);
-            markDirty();
-        }
+        applyConfig(config.withEntries(entries));
+    }
+
+    public void setSelectedPlatformIds(List<Long> selectedPlatformIds) {
+        applyConfig(config.withPlatformIds(selectedPlatformIds));
     }
     
     // Legacy support method for backward compatibility
     public String getSelectedJson() {
-        if (announcementEntries.isEmpty()) {
+        if (config.entries.isEmpty()) {
             return "";
         }
-        return announcementEntries.get(0).getJsonName();
+        return config.entries.get(0).getJsonName();
     }
 
     // Legacy support method for backward compatibility
     public void setSelectedJson(String json) {
-        announcementEntries.clear();
+        List<AnnouncementEntry> entries = new ArrayList<>();
         if (json != null && !json.trim().isEmpty()) {
-            announcementEntries.add(new AnnouncementEntry(json, 0));
+            entries.add(new AnnouncementEntry(json, 0));
         }
-            markDirty();
+        setAnnouncementEntries(entries);
     }
 
     public void sync() {
@@ -724,126 +591,4 @@ public class AnnounceTile extends BlockEntity implements ExtendedScreenHandlerFa
     public World getWorld() {
         return world;
     }
-
-    private String getDestination(List<Long> selectedPlatforms) {
-        if (selectedPlatforms.isEmpty()) {
-
-            return "destination_not_found";
-        }
-        RailwayData railwayData = AnnounceTile.getRailwayData(world);
-        if (railwayData == null) return "railwaydata_unknown";
-        final ScheduleEntry next = getNextScheduleEntry(railwayData, selectedPlatforms);
-        if (next == null) return "schedules_unknown";
-        final Route route = railwayData.dataCache.routeIdMap.get(next.routeId);
-        if (route == null) return "route_unknown";
-
-            // Prefer custom destination relative to current station index
-            String customDest = route.getDestination(Math.min(next.currentStationIndex, route.platformIds.size() - 1));
-            if (customDest != null && !customDest.isEmpty()) {
-                int lastPipeIndex = customDest.lastIndexOf('|');
-                return (lastPipeIndex != -1 && lastPipeIndex < customDest.length() - 1
-                        ? customDest.substring(lastPipeIndex + 1)
-                        : customDest).toLowerCase().trim();
-            }
-
-            // Fallback: use the last platform's station name
-            String finalDestination = null;
-            long lastPlatformId = route.getLastPlatformId();
-            Platform lastPlatform = railwayData.dataCache.platformIdMap.get(lastPlatformId);
-            Station lastStation = railwayData.dataCache.platformIdToStation.get(lastPlatformId);
-            if (lastPlatform != null && lastStation != null) {
-                finalDestination = lastStation.name;
-            }
-            if (finalDestination != null) {
-                int lastPipeIndex = finalDestination.lastIndexOf('|');
-                String result;
-                if (lastPipeIndex != -1 && lastPipeIndex < finalDestination.length() - 1) {
-                    result = finalDestination.substring(lastPipeIndex + 1).toLowerCase().trim();
-                } else {
-                    result = finalDestination.toLowerCase().trim();
-                }
-                return result;
-            } else {
-                return "destination_unknown";
-            }
-        
-    }
-
-    private String getRouteType(List<Long> selectedPlatforms) {
-        if (selectedPlatforms.isEmpty()) {
-
-            return "route_type_not_found";
-        }
-        RailwayData railwayData = RailwayData.getInstance(world);
-        if (railwayData == null) {
-            return "railwaydata_unknown";
-        }
-        final ScheduleEntry next = getNextScheduleEntry(railwayData, selectedPlatforms);
-        if (next == null) return "schedules_unknown";
-        final Route route = railwayData.dataCache.routeIdMap.get(next.routeId);
-        if (route != null) {
-                // Prefer explicit routeType first
-                if (route.routeType != null) {
-                    switch (route.routeType) {
-                        case LIGHT_RAIL:
-                            // Use light rail route number if available; else generic label
-                            if (route.lightRailRouteNumber != null && !route.lightRailRouteNumber.isEmpty()) {
-                                int lastPipeIndex = route.lightRailRouteNumber.lastIndexOf('|');
-                                String code = (lastPipeIndex != -1 && lastPipeIndex < route.lightRailRouteNumber.length() - 1)
-                                        ? route.lightRailRouteNumber.substring(lastPipeIndex + 1)
-                                        : route.lightRailRouteNumber;
-                                return code.toLowerCase().trim();
-                            } else {
-                                return "light_rail";
-                            }
-                        case HIGH_SPEED:
-                            return "high_speed";
-                        case NORMAL:
-                        default:
-                            // For normal routes, return blank type
-                            return "";
-                    }
-                }
-
-                // Fallback: try to use lightRailRouteNumber if set
-                if (route.lightRailRouteNumber != null && !route.lightRailRouteNumber.isEmpty()) {
-                    int lastPipeIndex = route.lightRailRouteNumber.lastIndexOf('|');
-                    String result;
-                    if (lastPipeIndex != -1 && lastPipeIndex < route.lightRailRouteNumber.length() - 1) {
-                        result = route.lightRailRouteNumber.substring(lastPipeIndex + 1).toLowerCase().trim();
-                    } else {
-                        result = route.lightRailRouteNumber.toLowerCase().trim();
-                    }
-                    return result;
-                }
-        }
-        return "route_type_unknown";
-    }
-
-    private String[] getNextArrivalHhMm(World world, List<Long> selectedPlatforms) {
-        String[] result = new String[]{"00", "00"};
-        if (world == null || selectedPlatforms == null || selectedPlatforms.isEmpty()) {
-            return result;
-        }
-        RailwayData railwayData = RailwayData.getInstance(world);
-        if (railwayData == null) {
-            return result;
-        }
-        final ScheduleEntry next = getNextScheduleEntry(railwayData, selectedPlatforms);
-        if (next == null) return result;
-        
-        // Calculate departure time (arrival + dwell)
-        long departureMillis = next.arrivalMillis;
-        if (!selectedPlatforms.isEmpty()) {
-            mtr.data.Platform platform = railwayData.dataCache.platformIdMap.get(selectedPlatforms.get(0));
-            if (platform != null) {
-                // dwellTime is in seconds, convert to milliseconds
-                departureMillis = next.arrivalMillis + (platform.getDwellTime() * 1000L);
-            }
-        }
-        java.time.ZonedDateTime zdt = java.time.Instant.ofEpochMilli(departureMillis).atZone(java.time.ZoneId.systemDefault());
-        String hh = String.format("%02d", zdt.getHour());
-        String mm = String.format("%02d", zdt.getMinute());
-        return new String[]{hh, mm};
-    }
-}
\ No newline at end of file
+}
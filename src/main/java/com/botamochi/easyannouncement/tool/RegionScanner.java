@@ -0,0 +1,290 @@
+package com.botamochi.easyannouncement.tool;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 停止中のワールドから AnnounceTile の位置一覧を作り直すオフラインツール。
+ * Memory-maps every {@code .mca} file of one dimension, scans the region files in parallel and writes a fresh
+ * {@code data/easy_announcement_positions.dat} in the format {@code AnnounceTilePositionsSavedData} reads.
+ * Only the JDK is needed, so it runs straight from the mod jar:
+ * <pre>
+ * java -cp easyannouncement.jar com.botamochi.easyannouncement.tool.RegionScanner &lt;dimension directory&gt;
+ * </pre>
+ * The dimension directory is the one containing {@code region/}: the world itself for the overworld,
+ * {@code DIM-1} / {@code DIM1} or {@code dimensions/&lt;namespace&gt;/&lt;path&gt;} otherwise.
+ * Stop the server first; the existing data file is kept as {@code .dat.bak}.
+ */
+public class RegionScanner {
+    private static final String ANNOUNCE_TILE_ID = "easyannouncement:announce_tile";
+    private static final String DATA_NAME = "easy_announcement_positions";
+    private static final String KEY = "announceTilePositions";
+    // 1.19.2。チャンクから読めなかった場合だけ使う
+    private static final int FALLBACK_DATA_VERSION = 3120;
+
+    private static final Pattern REGION_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+    private static final int SECTOR_BYTES = 4096;
+
+    private static final byte TAG_END = 0;
+    private static final byte TAG_BYTE = 1;
+    private static final byte TAG_SHORT = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_BYTE_ARRAY = 7;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_LIST = 9;
+    private static final byte TAG_COMPOUND = 10;
+    private static final byte TAG_INT_ARRAY = 11;
+    private static final byte TAG_LONG_ARRAY = 12;
+
+    private final Path regionDir;
+    private final AtomicInteger dataVersion = new AtomicInteger();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong failedChunks = new AtomicLong();
+
+    public RegionScanner(Path regionDir) {
+        this.regionDir = regionDir;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: RegionScanner <dimension directory>");
+            System.exit(2);
+        }
+        Path dimensionDir = Path.of(args[0]);
+        Path regionDir = dimensionDir.resolve("region");
+        if (!Files.isDirectory(regionDir)) {
+            System.err.println("No region directory in " + dimensionDir);
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        RegionScanner scanner = new RegionScanner(regionDir);
+        long[] positions = scanner.scan();
+        Path output = dimensionDir.resolve("data").resolve(DATA_NAME + ".dat");
+        scanner.write(output, positions);
+        System.out.printf("Found %d announcers in %d chunks (%d unreadable) in %.1f s, wrote %s%n",
+                positions.length, scanner.chunks.get(), scanner.failedChunks.get(),
+                (System.nanoTime() - start) / 1e9, output);
+    }
+
+    /**
+     * Packed positions of every announce tile in the dimension, without duplicates.
+     */
+    public long[] scan() throws IOException {
+        List<Path> regions;
+        try (Stream<Path> files = Files.list(regionDir)) {
+            regions = files.filter(path -> REGION_NAME.matcher(path.getFileName().toString()).matches()).toList();
+        }
+        // リージョンファイル単位で並列化する (共通 ForkJoinPool = コア数)
+        return regions.parallelStream()
+                .flatMapToLong(this::scanRegion)
+                .distinct()
+                .toArray();
+    }
+
+    private LongStream scanRegion(Path file) {
+        Matcher matcher = REGION_NAME.matcher(file.getFileName().toString());
+        if (!matcher.matches()) return LongStream.empty();
+        int regionX = Integer.parseInt(matcher.group(1));
+        int regionZ = Integer.parseInt(matcher.group(2));
+        LongStream.Builder found = LongStream.builder();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < SECTOR_BYTES) return LongStream.empty();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            // ヘッダ: 1024 チャンク分の (セクタ位置 3 バイト, セクタ数 1 バイト)
+            for (int i = 0; i < 1024; i++) {
+                int location = buffer.getInt(i * 4);
+                if (location == 0) continue;
+                long offset = (long) (location >>> 8) * SECTOR_BYTES;
+                if (offset + 5 > size) {
+                    failedChunks.incrementAndGet();
+                    continue;
+                }
+                try {
+                    readChunk(buffer, (int) offset, regionX * 32 + (i & 31), regionZ * 32 + (i >> 5), found);
+                    chunks.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    failedChunks.incrementAndGet();
+                    System.err.println("Skipping chunk " + i + " of " + file.getFileName() + ": " + e);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(file.toString(), e);
+        }
+        return found.build();
+    }
+
+    private void readChunk(MappedByteBuffer buffer, int offset, int chunkX, int chunkZ, LongConsumer found) throws IOException {
+        int length = buffer.getInt(offset);
+        int compression = buffer.get(offset + 4) & 0xFF;
+        InputStream raw;
+        if ((compression & 0x80) != 0) {
+            // 1 MiB を超えるチャンクは別ファイル (c.X.Z.mcc) に置かれる
+            raw = Files.newInputStream(regionDir.resolve("c." + chunkX + "." + chunkZ + ".mcc"));
+            compression &= 0x7F;
+        } else {
+            if (length < 1 || offset + 4L + length > buffer.capacity()) {
+                throw new IOException("bad chunk length " + length);
+            }
+            byte[] data = new byte[length - 1];
+            buffer.get(offset + 5, data);
+            raw = new ByteArrayInputStream(data);
+        }
+        InputStream in = switch (compression) {
+            case 1 -> new GZIPInputStream(raw);
+            case 2 -> new InflaterInputStream(raw);
+            case 3 -> raw;
+            default -> throw new IOException("unknown compression " + compression);
+        };
+        try (DataInputStream nbt = new DataInputStream(new BufferedInputStream(in))) {
+            if (nbt.readByte() != TAG_COMPOUND) throw new IOException("chunk root is not a compound");
+            nbt.readUTF();
+            readChunkCompound(nbt, found);
+        }
+    }
+
+    // block_entities (1.18+) か Level.TileEntities (旧形式) だけを読み、他は読み飛ばす
+    private void readChunkCompound(DataInputStream in, LongConsumer found) throws IOException {
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String name = in.readUTF();
+            if (type == TAG_LIST && (name.equals("block_entities") || name.equals("TileEntities"))) {
+                readBlockEntities(in, found);
+            } else if (type == TAG_COMPOUND && name.equals("Level")) {
+                readChunkCompound(in, found);
+            } else if (type == TAG_INT && name.equals("DataVersion")) {
+                dataVersion.accumulateAndGet(in.readInt(), Math::max);
+            } else {
+                skip(in, type);
+            }
+        }
+    }
+
+    private static void readBlockEntities(DataInputStream in, LongConsumer found) throws IOException {
+        byte elementType = in.readByte();
+        int count = in.readInt();
+        if (elementType != TAG_COMPOUND) {
+            for (int i = 0; i < count; i++) {
+                skip(in, elementType);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            String id = null;
+            int x = 0, y = 0, z = 0;
+            byte type;
+            while ((type = in.readByte()) != TAG_END) {
+                String name = in.readUTF();
+                if (type == TAG_STRING && name.equals("id")) {
+                    id = in.readUTF();
+                } else if (type == TAG_INT && name.length() == 1) {
+                    int value = in.readInt();
+                    switch (name.charAt(0)) {
+                        case 'x' -> x = value;
+                        case 'y' -> y = value;
+                        case 'z' -> z = value;
+                        default -> {
+                        }
+                    }
+                } else {
+                    skip(in, type);
+                }
+            }
+            if (ANNOUNCE_TILE_ID.equals(id)) {
+                found.accept(asLong(x, y, z));
+            }
+        }
+    }
+
+    private static void skip(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case TAG_BYTE -> in.skipNBytes(1);
+            case TAG_SHORT -> in.skipNBytes(2);
+            case TAG_INT, TAG_FLOAT -> in.skipNBytes(4);
+            case TAG_LONG, TAG_DOUBLE -> in.skipNBytes(8);
+            case TAG_BYTE_ARRAY -> in.skipNBytes(in.readInt());
+            case TAG_STRING -> in.skipNBytes(in.readUnsignedShort());
+            case TAG_INT_ARRAY -> in.skipNBytes(4L * in.readInt());
+            case TAG_LONG_ARRAY -> in.skipNBytes(8L * in.readInt());
+            case TAG_LIST -> {
+                byte elementType = in.readByte();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    skip(in, elementType);
+                }
+            }
+            case TAG_COMPOUND -> {
+                byte inner;
+                while ((inner = in.readByte()) != TAG_END) {
+                    in.skipNBytes(in.readUnsignedShort());
+                    skip(in, inner);
+                }
+            }
+            default -> throw new IOException("unknown tag type " + type);
+        }
+    }
+
+    // BlockPos.asLong と同じ詰め方 (X 26 ビット, Z 26 ビット, Y 12 ビット)
+    private static long asLong(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | (long) y & 0xFFFL;
+    }
+
+    /**
+     * Writes {@code positions} as the PersistentState file: gzipped {@code {data: {announceTilePositions: [L; ...]},
+     * DataVersion: ...}}.
+     */
+    public void write(Path output, long[] positions) throws IOException {
+        Files.createDirectories(output.getParent());
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(temp)))) {
+            out.writeByte(TAG_COMPOUND);
+            out.writeUTF("");
+
+            out.writeByte(TAG_COMPOUND);
+            out.writeUTF("data");
+            out.writeByte(TAG_LONG_ARRAY);
+            out.writeUTF(KEY);
+            out.writeInt(positions.length);
+            for (long packed : positions) {
+                out.writeLong(packed);
+            }
+            out.writeByte(TAG_END);
+
+            out.writeByte(TAG_INT);
+            out.writeUTF("DataVersion");
+            int version = dataVersion.get();
+            out.writeInt(version != 0 ? version : FALLBACK_DATA_VERSION);
+            out.writeByte(TAG_END);
+        }
+        if (Files.exists(output)) {
+            Files.copy(output, output.resolveSibling(output.getFileName() + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
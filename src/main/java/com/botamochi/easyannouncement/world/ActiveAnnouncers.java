@@ -0,0 +1,102 @@
+package com.botamochi.easyannouncement.world;
+
+import com.botamochi.easyannouncement.schedule.AnnounceScheduler;
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ロード済みチャンク内の AnnounceTile だけを保持するアクティブセット。
+ * Tracks only the announcers whose chunk is currently loaded, so the server tick
+ * never has to call {@code world.getBlockEntity} on a position that may be unloaded.
+ * Kept up to date from chunk and block-entity load/unload events; activation arms the
+ * announcer in its world's {@link AnnounceScheduler} and deactivation disarms it.
+ */
+public class ActiveAnnouncers {
+    private static final Map<RegistryKey<World>, Long2ObjectLinkedOpenHashMap<AnnounceTile>> ACTIVE = new HashMap<>();
+
+    public static void activate(ServerWorld world, AnnounceTile tile) {
+        if (tile.isRemoved()) return;
+        AnnounceTile previous = ACTIVE.computeIfAbsent(world.getRegistryKey(), key -> new Long2ObjectLinkedOpenHashMap<>()).put(tile.getPos().asLong(), tile);
+        if (previous != tile) {
+            AnnounceScheduler scheduler = AnnounceScheduler.get(world);
+            if (previous != null) {
+                scheduler.disarm(previous);
+            }
+            scheduler.arm(tile);
+        }
+    }
+
+    public static void deactivate(ServerWorld world, BlockPos pos) {
+        Long2ObjectLinkedOpenHashMap<AnnounceTile> tiles = ACTIVE.get(world.getRegistryKey());
+        if (tiles != null) {
+            disarm(world, tiles.remove(pos.asLong()));
+        }
+    }
+
+    /**
+     * Activates the registered announcers that live inside a chunk which has just finished loading.
+     * Only that chunk's partition of the registry is visited, and the block entities are read from the
+     * chunk itself, so no further chunk lookup happens.
+     */
+    public static void onChunkLoad(ServerWorld world, WorldChunk chunk, AnnounceTilePositionsSavedData savedData) {
+        if (savedData == null) return;
+        // そのチャンクに登録された位置だけを見る
+        for (LongIterator it = savedData.getPositionsInChunk(chunk.getPos().toLong()).iterator(); it.hasNext(); ) {
+            long packed = it.nextLong();
+            // getBlockEntity は保留中の NBT からタイルを生成することがあるので、不変の BlockPos を渡す
+            BlockEntity blockEntity = chunk.getBlockEntity(BlockPos.fromLong(packed));
+            if (blockEntity instanceof AnnounceTile announceTile) {
+                activate(world, announceTile);
+            }
+        }
+    }
+
+    /**
+     * Drops every announcer of an unloading chunk, including ones whose unload event was missed.
+     */
+    public static void onChunkUnload(ServerWorld world, WorldChunk chunk) {
+        Long2ObjectLinkedOpenHashMap<AnnounceTile> tiles = ACTIVE.get(world.getRegistryKey());
+        if (tiles == null || tiles.isEmpty()) return;
+        for (BlockPos pos : chunk.getBlockEntityPositions()) {
+            disarm(world, tiles.remove(pos.asLong()));
+        }
+    }
+
+    private static void disarm(ServerWorld world, AnnounceTile tile) {
+        if (tile == null) return;
+        AnnounceScheduler scheduler = AnnounceScheduler.getIfPresent(world);
+        if (scheduler != null) {
+            scheduler.disarm(tile);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the active announcers of the given world, safe to iterate while ticking.
+     */
+    public static List<AnnounceTile> get(World world) {
+        Long2ObjectLinkedOpenHashMap<AnnounceTile> tiles = ACTIVE.get(world.getRegistryKey());
+        if (tiles == null || tiles.isEmpty()) return Collections.emptyList();
+        return new ArrayList<>(tiles.values());
+    }
+
+    public static void clear(ServerWorld world) {
+        ACTIVE.remove(world.getRegistryKey());
+    }
+
+    public static void clear() {
+        ACTIVE.clear();
+    }
+}
@@ -0,0 +1,73 @@
+package com.botamochi.easyannouncement.world;
+
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 放送を受け取るプレイヤーの選別。
+ * Applies on the server the same checks the client does before playing an announcement:
+ * same dimension, within {@code soundRange} of the block centre, inside the start/end box when enabled,
+ * and not above the block when {@code excludePlayersAbove} is set.
+ * Candidates come from the world's {@link PlayerSpatialIndex}, limited to the box those rules allow.
+ */
+public class AnnounceAudience {
+
+    public static List<ServerPlayerEntity> select(ServerWorld world, AnnounceTile tile) {
+        List<ServerPlayerEntity> recipients = new ArrayList<>();
+        BlockPos pos = tile.getPos();
+        int range = tile.getSoundRange();
+        // 音の届く立方体と、有効ならエリア指定の箱との共通部分だけを調べる
+        int minX = pos.getX() - range;
+        int minY = pos.getY() - range;
+        int minZ = pos.getZ() - range;
+        int maxX = pos.getX() + range;
+        int maxY = pos.getY() + range;
+        int maxZ = pos.getZ() + range;
+        if (tile.isBoundingBoxEnabled()) {
+            minX = Math.max(minX, Math.min(tile.getStartX(), tile.getEndX()));
+            minY = Math.max(minY, Math.min(tile.getStartY(), tile.getEndY()));
+            minZ = Math.max(minZ, Math.min(tile.getStartZ(), tile.getEndZ()));
+            maxX = Math.min(maxX, Math.max(tile.getStartX(), tile.getEndX()));
+            maxY = Math.min(maxY, Math.max(tile.getStartY(), tile.getEndY()));
+            maxZ = Math.min(maxZ, Math.max(tile.getStartZ(), tile.getEndZ()));
+        }
+        if (tile.isExcludePlayersAbove()) {
+            maxY = Math.min(maxY, pos.getY());
+        }
+        // ディメンションはワールドごとの索引で絞られる
+        PlayerSpatialIndex.get(world).forEachNear(minX, minY, minZ, maxX, maxY, maxZ, player -> {
+            if (canHear(tile, player)) {
+                recipients.add(player);
+            }
+        });
+        return recipients;
+    }
+
+    public static boolean canHear(AnnounceTile tile, ServerPlayerEntity player) {
+        BlockPos pos = tile.getPos();
+        // Skip players above the block if this setting is enabled
+        if (tile.isExcludePlayersAbove() && player.getBlockY() > pos.getY()) {
+            return false;
+        }
+        double range = tile.getSoundRange();
+        if (player.squaredDistanceTo(pos.getX() + 0.5D, pos.getY() + 0.5D, pos.getZ() + 0.5D) > range * range) {
+            return false;
+        }
+        if (tile.isBoundingBoxEnabled()) {
+            double x = player.getX();
+            double y = player.getY();
+            double z = player.getZ();
+            if (x < Math.min(tile.getStartX(), tile.getEndX()) || x > Math.max(tile.getStartX(), tile.getEndX())
+                    || y < Math.min(tile.getStartY(), tile.getEndY()) || y > Math.max(tile.getStartY(), tile.getEndY())
+                    || z < Math.min(tile.getStartZ(), tile.getEndZ()) || z > Math.max(tile.getStartZ(), tile.getEndZ())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package com.botamochi.easyannouncement.world;
+
+import com.botamochi.easyannouncement.data.AnnounceTemplate;
+import com.botamochi.easyannouncement.data.AnnouncementEntry;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.GlobalPos;
+
+import java.util.List;
+
+/**
+ * サーバー全体の共有テンプレート。
+ * The templates live in the overworld's persistent state, but are looked up from announcers in every dimension.
+ * Server thread only.
+ */
+public class AnnounceTemplateRegistry {
+    private static AnnounceTemplateSavedData savedData;
+
+    public static void load(ServerWorld overworld) {
+        savedData = AnnounceTemplateSavedData.createAndLoad(overworld);
+    }
+
+    /**
+     * The loaded templates, or {@code null} before the overworld has loaded.
+     */
+    public static AnnounceTemplateSavedData get() {
+        return savedData;
+    }
+
+    /**
+     * The entries of template {@code id}; empty if it does not exist (anymore).
+     */
+    public static List<AnnouncementEntry> getEntries(int id) {
+        AnnounceTemplate template = savedData != null ? savedData.get(id) : null;
+        return template != null ? template.entries : List.of();
+    }
+
+    /**
+     * Records which template the announcer at {@code pos} uses ({@code NO_TEMPLATE} for none).
+     */
+    public static void setUser(ServerWorld world, BlockPos pos, int id) {
+        if (savedData != null) {
+            savedData.setUser(GlobalPos.create(world.getRegistryKey(), pos.toImmutable()), id);
+        }
+    }
+
+    public static void clear() {
+        savedData = null;
+    }
+}
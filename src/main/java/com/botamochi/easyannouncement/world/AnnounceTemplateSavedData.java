@@ -0,0 +1,143 @@
+package com.botamochi.easyannouncement.world;
+
+import com.botamochi.easyannouncement.data.AnnounceConfig;
+import com.botamochi.easyannouncement.data.AnnounceTemplate;
+import com.botamochi.easyannouncement.data.AnnouncementEntry;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.GlobalPos;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.PersistentState;
+import net.minecraft.world.PersistentStateManager;
+
+import java.util.List;
+
+/**
+ * 共有テンプレートを保存する PersistentState (オーバーワールドに一つ)。
+ * Ids are never reused, so an announcer still pointing at a removed template stays silent instead of
+ * silently playing a different one.
+ * Also records which announcer (in any dimension, loaded or not) uses which template, so a template can't be
+ * removed from under announcers that still play it.
+ */
+public class AnnounceTemplateSavedData extends PersistentState {
+    private final Int2ObjectOpenHashMap<AnnounceTemplate> templates = new Int2ObjectOpenHashMap<>();
+    private int nextId = 1;
+    // アナウンサーの位置 -> 使っているテンプレート ID
+    private final Object2IntOpenHashMap<GlobalPos> users = new Object2IntOpenHashMap<>();
+
+    public AnnounceTemplateSavedData() {
+        super();
+    }
+
+    public AnnounceTemplate get(int id) {
+        return templates.get(id);
+    }
+
+    public AnnounceTemplate getByName(String name) {
+        for (AnnounceTemplate template : templates.values()) {
+            if (template.name.equals(name)) return template;
+        }
+        return null;
+    }
+
+    /**
+     * All templates by id. Read-only.
+     */
+    public Int2ObjectMap<AnnounceTemplate> getAll() {
+        return Int2ObjectMaps.unmodifiable(templates);
+    }
+
+    /**
+     * Creates the template {@code name}, or replaces its entries as the next version if it already exists.
+     */
+    public AnnounceTemplate save(String name, List<AnnouncementEntry> entries) {
+        AnnounceTemplate existing = getByName(name);
+        AnnounceTemplate template = existing != null ? existing.withEntries(entries) : new AnnounceTemplate(nextId++, name, 1, entries);
+        templates.put(template.id, template);
+        markDirty();
+        return template;
+    }
+
+    public AnnounceTemplate remove(String name) {
+        AnnounceTemplate template = getByName(name);
+        if (template != null) {
+            templates.remove(template.id);
+            markDirty();
+        }
+        return template;
+    }
+
+    /**
+     * Records that the announcer at {@code pos} uses template {@code id}; {@link AnnounceConfig#NO_TEMPLATE} forgets it.
+     */
+    public void setUser(GlobalPos pos, int id) {
+        int previous = id != AnnounceConfig.NO_TEMPLATE ? users.put(pos, id) : users.removeInt(pos);
+        if (previous != id) markDirty();
+    }
+
+    /**
+     * The number of announcers that use template {@code id}, including ones in unloaded chunks.
+     */
+    public int getUserCount(int id) {
+        int count = 0;
+        for (Object2IntMap.Entry<GlobalPos> entry : users.object2IntEntrySet()) {
+            if (entry.getIntValue() == id) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public NbtCompound writeNbt(NbtCompound nbt) {
+        NbtList list = new NbtList();
+        for (AnnounceTemplate template : templates.values()) {
+            list.add(template.writeNbt(new NbtCompound()));
+        }
+        nbt.put("templates", list);
+        nbt.putInt("nextId", nextId);
+        NbtList userList = new NbtList();
+        for (Object2IntMap.Entry<GlobalPos> entry : users.object2IntEntrySet()) {
+            NbtCompound user = new NbtCompound();
+            user.putString("Dimension", entry.getKey().getDimension().getValue().toString());
+            user.putLong("Pos", entry.getKey().getPos().asLong());
+            user.putInt("Template", entry.getIntValue());
+            userList.add(user);
+        }
+        nbt.put("users", userList);
+        return nbt;
+    }
+
+    public static AnnounceTemplateSavedData createAndLoad(ServerWorld world) {
+        PersistentStateManager persistentStateManager = world.getPersistentStateManager();
+        return persistentStateManager.getOrCreate(AnnounceTemplateSavedData::fromNbt, AnnounceTemplateSavedData::new, "easy_announcement_templates");
+    }
+
+    public static AnnounceTemplateSavedData fromNbt(NbtCompound nbt) {
+        AnnounceTemplateSavedData savedData = new AnnounceTemplateSavedData();
+        NbtList list = nbt.getList("templates", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < list.size(); i++) {
+            AnnounceTemplate template = AnnounceTemplate.fromNbt(list.getCompound(i));
+            savedData.templates.put(template.id, template);
+            savedData.nextId = Math.max(savedData.nextId, template.id + 1);
+        }
+        savedData.nextId = Math.max(savedData.nextId, nbt.getInt("nextId"));
+        NbtList userList = nbt.getList("users", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < userList.size(); i++) {
+            NbtCompound user = userList.getCompound(i);
+            Identifier dimension = Identifier.tryParse(user.getString("Dimension"));
+            if (dimension == null) continue;
+            savedData.users.put(GlobalPos.create(RegistryKey.of(Registry.WORLD_KEY, dimension), BlockPos.fromLong(user.getLong("Pos"))),
+                    user.getInt("Template"));
+        }
+        return savedData;
+    }
+}
@@ -1,46 +1,99 @@
 package com.botamochi.easyannouncement.world;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
 import net.minecraft.nbt.NbtLong;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.PersistentState;
 import net.minecraft.world.PersistentStateManager;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.function.Function;
-
+/**
+ * AnnounceTile の位置 (BlockPos.asLong) を保存する PersistentState。
+ * Positions are partitioned by {@link ChunkPos#toLong}, so loading, unloading or querying a chunk only touches
+ * the announcers inside it. They are saved as one long array; the older format with one NbtLong per position
+ * is still read.
+ */
 public class AnnounceTilePositionsSavedData extends PersistentState {
-    private Set<BlockPos> announceTilePositions = new HashSet<>();
+    private static final String KEY = "announceTilePositions";
+
+    // チャンク -> そのチャンク内の位置。空になったチャンクは消す
+    private final Long2ObjectOpenHashMap<LongOpenHashSet> positionsByChunk = new Long2ObjectOpenHashMap<>();
+    private int size;
 
     public AnnounceTilePositionsSavedData() {
         super();
     }
 
-    public Set<BlockPos> getPositions() {
-        return announceTilePositions;
+    /**
+     * Packed positions ({@link BlockPos#asLong}) inside the given chunk. Read-only; iterate with {@code nextLong}.
+     */
+    public LongSet getPositionsInChunk(long chunkPos) {
+        LongOpenHashSet positions = positionsByChunk.get(chunkPos);
+        return positions != null ? LongSets.unmodifiable(positions) : LongSets.EMPTY_SET;
+    }
+
+    /**
+     * Chunks ({@link ChunkPos#toLong}) that contain at least one registered announcer. Read-only.
+     */
+    public LongSet getChunks() {
+        return LongSets.unmodifiable(positionsByChunk.keySet());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(BlockPos pos) {
+        LongOpenHashSet positions = positionsByChunk.get(ChunkPos.toLong(pos));
+        return positions != null && positions.contains(pos.asLong());
     }
 
     public void addPosition(BlockPos pos) {
-        announceTilePositions.add(pos);
-        markDirty();
+        // チャンク読み込みのたびに呼ばれるため、変化があった時だけ保存対象にする
+        if (add(pos.asLong())) {
+            markDirty();
+        }
     }
 
     public void removePosition(BlockPos pos) {
-        announceTilePositions.remove(pos);
-        markDirty();
+        long chunkPos = ChunkPos.toLong(pos);
+        LongOpenHashSet positions = positionsByChunk.get(chunkPos);
+        if (positions != null && positions.remove(pos.asLong())) {
+            if (positions.isEmpty()) {
+                positionsByChunk.remove(chunkPos);
+            }
+            size--;
+            markDirty();
+        }
+    }
+
+    private boolean add(long packed) {
+        long chunkPos = ChunkPos.toLong(BlockPos.unpackLongX(packed) >> 4, BlockPos.unpackLongZ(packed) >> 4);
+        if (positionsByChunk.computeIfAbsent(chunkPos, key -> new LongOpenHashSet(4)).add(packed)) {
+            size++;
+            return true;
+        }
+        return false;
     }
 
     @Override
     public NbtCompound writeNbt(NbtCompound nbt) {
-        NbtList list = new NbtList();
-        for (BlockPos pos : announceTilePositions) {
-            list.add(NbtLong.of(pos.asLong()));
+        long[] packed = new long[size];
+        int i = 0;
+        for (LongOpenHashSet positions : positionsByChunk.values()) {
+            for (LongIterator it = positions.iterator(); it.hasNext(); ) {
+                packed[i++] = it.nextLong();
+            }
         }
-        nbt.put("announceTilePositions", list);
+        nbt.putLongArray(KEY, packed);
         return nbt;
     }
 
@@ -56,13 +109,24 @@ public class AnnounceTilePositionsSavedData extends PersistentState {
     }
 
     public void readNbt(NbtCompound nbt) {
-        NbtList list = nbt.getList("announceTilePositions", NbtElement.LONG_TYPE);
-        announceTilePositions.clear();
+        positionsByChunk.clear();
+        size = 0;
+        if (nbt.contains(KEY, NbtElement.LONG_ARRAY_TYPE)) {
+            for (long packed : nbt.getLongArray(KEY)) {
+                add(packed);
+            }
+            return;
+        }
+        // 旧形式: NbtLong のリスト
+        NbtList list = nbt.getList(KEY, NbtElement.LONG_TYPE);
         for (int i = 0; i < list.size(); i++) {
-            NbtElement element = list.get(i);
-            if (element instanceof NbtLong longElement) {
-                announceTilePositions.add(BlockPos.fromLong(longElement.longValue()));
+            if (list.get(i) instanceof NbtLong longElement) {
+                add(longElement.longValue());
             }
         }
+        if (!list.isEmpty()) {
+            // 次の保存で新形式に書き換える
+            markDirty();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,137 @@
+package com.botamochi.easyannouncement.world;
+
+import com.botamochi.easyannouncement.Easyannouncement;
+import com.botamochi.easyannouncement.config.EAConfig;
+import com.botamochi.easyannouncement.data.AnnounceConfig;
+import com.botamochi.easyannouncement.tile.AnnounceTile;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 位置レジストリに残った古いエントリを少しずつ掃除する。
+ * Blocks removed by world editors, explosions or chunk resets never reach {@code onStateReplaced}, so their
+ * positions would stay registered forever. Every tick a few registered chunks are checked; if the chunk is
+ * loaded, positions without an {@link AnnounceTile} are dropped from the registry and the active set.
+ * Unloaded chunks are skipped and checked again in the next pass. One pass walks every registered chunk once.
+ */
+public class AnnouncerReconciler {
+    private static final Map<RegistryKey<World>, State> STATES = new HashMap<>();
+
+    public static void tick(MinecraftServer server) {
+        int budget = EAConfig.get().reconcileChunksPerTick;
+        if (budget <= 0) return;
+        for (ServerWorld world : server.getWorlds()) {
+            STATES.computeIfAbsent(world.getRegistryKey(), key -> new State()).tick(world, budget);
+        }
+    }
+
+    public static Map<RegistryKey<World>, State> getStates() {
+        return STATES;
+    }
+
+    public static void remove(ServerWorld world) {
+        STATES.remove(world.getRegistryKey());
+    }
+
+    public static void clear() {
+        STATES.clear();
+    }
+
+    /**
+     * Progress and drift counters of one dimension.
+     */
+    public static class State {
+        private final LongArrayFIFOQueue pendingChunks = new LongArrayFIFOQueue();
+        private final LongArrayList stale = new LongArrayList();
+        private long removedTotal;
+        private int removedThisPass;
+        private int skippedThisPass;
+        private int lastPassRemoved;
+        private int lastPassSkipped;
+        private int passes;
+
+        private void tick(ServerWorld world, int budget) {
+            AnnounceTilePositionsSavedData savedData = AnnouncerRegistry.get(world);
+            if (pendingChunks.isEmpty()) {
+                if (savedData.size() == 0) return;
+                // 次の一周: 登録のあるチャンクを順番待ちに積む
+                for (LongIterator it = savedData.getChunks().iterator(); it.hasNext(); ) {
+                    pendingChunks.enqueue(it.nextLong());
+                }
+            }
+            for (int i = 0; i < budget && !pendingChunks.isEmpty(); i++) {
+                check(world, savedData, pendingChunks.dequeueLong());
+            }
+            if (pendingChunks.isEmpty()) {
+                finishPass(world);
+            }
+        }
+
+        private void check(ServerWorld world, AnnounceTilePositionsSavedData savedData, long chunkPos) {
+            // 読み込み済みのチャンクだけを見る (ここでチャンクを読み込ませない)
+            WorldChunk chunk = world.getChunkManager().getWorldChunk(ChunkPos.getPackedX(chunkPos), ChunkPos.getPackedZ(chunkPos));
+            if (chunk == null) {
+                skippedThisPass++;
+                return;
+            }
+            for (LongIterator it = savedData.getPositionsInChunk(chunkPos).iterator(); it.hasNext(); ) {
+                long packed = it.nextLong();
+                if (!(chunk.getBlockEntity(BlockPos.fromLong(packed)) instanceof AnnounceTile)) {
+                    stale.add(packed);
+                }
+            }
+            for (int i = 0; i < stale.size(); i++) {
+                BlockPos pos = BlockPos.fromLong(stale.getLong(i));
+                savedData.removePosition(pos);
+                AnnounceTemplateRegistry.setUser(world, pos, AnnounceConfig.NO_TEMPLATE);
+                ActiveAnnouncers.deactivate(world, pos);
+            }
+            removedThisPass += stale.size();
+            stale.clear();
+        }
+
+        private void finishPass(ServerWorld world) {
+            if (removedThisPass > 0) {
+                Easyannouncement.LOGGER.info("[EasyAnnouncement] Removed {} stale announcer positions in {}",
+                        removedThisPass, world.getRegistryKey().getValue());
+            }
+            removedTotal += removedThisPass;
+            lastPassRemoved = removedThisPass;
+            lastPassSkipped = skippedThisPass;
+            removedThisPass = 0;
+            skippedThisPass = 0;
+            passes++;
+        }
+
+        public long getRemovedTotal() {
+            return removedTotal + removedThisPass;
+        }
+
+        public int getLastPassRemoved() {
+            return lastPassRemoved;
+        }
+
+        public int getLastPassSkipped() {
+            return lastPassSkipped;
+        }
+
+        public int getPendingChunkCount() {
+            return pendingChunks.size();
+        }
+
+        public int getPasses() {
+            return passes;
+        }
+    }
+}
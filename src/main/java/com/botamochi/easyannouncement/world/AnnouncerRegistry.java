@@ -0,0 +1,39 @@
+package com.botamochi.easyannouncement.world;
+
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ディメンションごとの AnnounceTile 位置レジストリ。
+ * Holds one {@link AnnounceTilePositionsSavedData} per dimension, so each world only
+ * sees the announcers that were placed in it.
+ */
+public class AnnouncerRegistry {
+    private static final Map<RegistryKey<World>, AnnounceTilePositionsSavedData> SAVED_DATA = new HashMap<>();
+
+    public static AnnounceTilePositionsSavedData load(ServerWorld world) {
+        AnnounceTilePositionsSavedData savedData = AnnounceTilePositionsSavedData.createAndLoad(world);
+        SAVED_DATA.put(world.getRegistryKey(), savedData);
+        return savedData;
+    }
+
+    /**
+     * Returns the registry of the given world, loading it from the world's persistent state if needed.
+     */
+    public static AnnounceTilePositionsSavedData get(ServerWorld world) {
+        AnnounceTilePositionsSavedData savedData = SAVED_DATA.get(world.getRegistryKey());
+        return savedData != null ? savedData : load(world);
+    }
+
+    public static void unload(ServerWorld world) {
+        SAVED_DATA.remove(world.getRegistryKey());
+    }
+
+    public static void clear() {
+        SAVED_DATA.clear();
+    }
+}
@@ -0,0 +1,141 @@
+package com.botamochi.easyannouncement.world;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * ワールドごとのプレイヤー空間ハッシュ。
+ * Buckets the players of one world by chunk section (16x16x16). Buckets are only touched when a player
+ * crosses a section boundary, joins or leaves the world, so a box query around an announcer visits the
+ * nearby buckets instead of every online player.
+ */
+public class PlayerSpatialIndex {
+    private static final Map<RegistryKey<World>, PlayerSpatialIndex> INDEXES = new HashMap<>();
+
+    private final Long2ObjectOpenHashMap<List<ServerPlayerEntity>> buckets = new Long2ObjectOpenHashMap<>();
+    private final Object2LongOpenHashMap<ServerPlayerEntity> sections = new Object2LongOpenHashMap<>();
+
+    public static PlayerSpatialIndex get(ServerWorld world) {
+        return INDEXES.computeIfAbsent(world.getRegistryKey(), key -> new PlayerSpatialIndex());
+    }
+
+    public static void remove(ServerWorld world) {
+        INDEXES.remove(world.getRegistryKey());
+    }
+
+    public static void clear() {
+        INDEXES.clear();
+    }
+
+    /**
+     * Moves players whose chunk section changed since the last call. Run once per server tick.
+     */
+    public static void tick(MinecraftServer server) {
+        for (ServerWorld world : server.getWorlds()) {
+            get(world).update(world);
+        }
+    }
+
+    private void update(ServerWorld world) {
+        List<ServerPlayerEntity> players = world.getPlayers();
+        for (ServerPlayerEntity player : players) {
+            long section = ChunkSectionPos.asLong(player.getBlockX() >> 4, player.getBlockY() >> 4, player.getBlockZ() >> 4);
+            if (!sections.containsKey(player)) {
+                sections.put(player, section);
+                bucket(section).add(player);
+            } else {
+                long previous = sections.getLong(player);
+                if (previous != section) {
+                    unbucket(previous, player);
+                    sections.put(player, section);
+                    bucket(section).add(player);
+                }
+            }
+        }
+        if (sections.size() != players.size()) {
+            // ログアウト・ディメンション移動・リスポーンで居なくなったプレイヤーを外す
+            ObjectIterator<Object2LongMap.Entry<ServerPlayerEntity>> it = sections.object2LongEntrySet().fastIterator();
+            while (it.hasNext()) {
+                Object2LongMap.Entry<ServerPlayerEntity> entry = it.next();
+                ServerPlayerEntity player = entry.getKey();
+                if (player.isRemoved() || player.getWorld() != world) {
+                    unbucket(entry.getLongValue(), player);
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits every player whose chunk section intersects the given block box (inclusive).
+     * Callers still apply their exact distance and box checks.
+     */
+    public void forEachNear(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Consumer<ServerPlayerEntity> consumer) {
+        if (buckets.isEmpty() || minX > maxX || minY > maxY || minZ > maxZ) return;
+        int minSectionX = minX >> 4;
+        int minSectionY = minY >> 4;
+        int minSectionZ = minZ >> 4;
+        int maxSectionX = maxX >> 4;
+        int maxSectionY = maxY >> 4;
+        int maxSectionZ = maxZ >> 4;
+        long boxSections = (long) (maxSectionX - minSectionX + 1) * (maxSectionY - minSectionY + 1) * (maxSectionZ - minSectionZ + 1);
+        if (boxSections > buckets.size()) {
+            // 範囲の方が広い場合は、埋まっているバケットだけを調べる
+            for (Long2ObjectMap.Entry<List<ServerPlayerEntity>> entry : buckets.long2ObjectEntrySet()) {
+                long section = entry.getLongKey();
+                int x = ChunkSectionPos.unpackX(section);
+                int y = ChunkSectionPos.unpackY(section);
+                int z = ChunkSectionPos.unpackZ(section);
+                if (x >= minSectionX && x <= maxSectionX && y >= minSectionY && y <= maxSectionY && z >= minSectionZ && z <= maxSectionZ) {
+                    entry.getValue().forEach(consumer);
+                }
+            }
+            return;
+        }
+        for (int x = minSectionX; x <= maxSectionX; x++) {
+            for (int y = minSectionY; y <= maxSectionY; y++) {
+                for (int z = minSectionZ; z <= maxSectionZ; z++) {
+                    List<ServerPlayerEntity> bucket = buckets.get(ChunkSectionPos.asLong(x, y, z));
+                    if (bucket != null) {
+                        bucket.forEach(consumer);
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return sections.size();
+    }
+
+    private List<ServerPlayerEntity> bucket(long section) {
+        List<ServerPlayerEntity> bucket = buckets.get(section);
+        if (bucket == null) {
+            bucket = new ArrayList<>(2);
+            buckets.put(section, bucket);
+        }
+        return bucket;
+    }
+
+    private void unbucket(long section, ServerPlayerEntity player) {
+        List<ServerPlayerEntity> bucket = buckets.get(section);
+        if (bucket != null && bucket.remove(player) && bucket.isEmpty()) {
+            buckets.remove(section);
+        }
+    }
+}
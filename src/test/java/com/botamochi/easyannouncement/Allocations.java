@@ -0,0 +1,36 @@
+package com.botamochi.easyannouncement;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * テスト用: 現在のスレッドが確保したバイト数を測る。
+ * Backed by {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, which reads the thread's
+ * allocation counter (including its current TLAB) without allocating itself.
+ */
+public final class Allocations {
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {
+    }
+
+    /**
+     * Skips the calling test if this JVM cannot count allocations per thread.
+     */
+    public static void assumeSupported() {
+        assumeTrue(THREADS.isThreadAllocatedMemorySupported());
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Bytes the current thread allocated while running {@code action}.
+     */
+    public static long allocatedBytes(Runnable action) {
+        long thread = Thread.currentThread().getId();
+        long start = THREADS.getThreadAllocatedBytes(thread);
+        action.run();
+        long end = THREADS.getThreadAllocatedBytes(thread);
+        return end - start;
+    }
+}
@@ -0,0 +1,91 @@
+package com.botamochi.easyannouncement.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * The sharing properties the tile relies on to keep one small config per announcer.
+ */
+class AnnounceConfigTest {
+    private static AnnounceConfig config(long[] platformIds, String attenuationType, String triggerMode) {
+        return config(platformIds, List.of(), attenuationType, triggerMode);
+    }
+
+    private static AnnounceConfig config(long[] platformIds, List<AnnouncementEntry> entries, String attenuationType, String triggerMode) {
+        AnnounceConfig d = AnnounceConfig.DEFAULT;
+        return new AnnounceConfig(d.seconds, platformIds, entries, d.volume, d.range, attenuationType, d.boundingBoxEnabled,
+                d.startX, d.startY, d.startZ, d.endX, d.endY, d.endZ, triggerMode, d.repeatMode, d.excludePlayersAbove);
+    }
+
+    @Test
+    void unconfiguredConfigIsSharedDefault() {
+        // NBT から読み直した未設定のタイルも DEFAULT を指す
+        AnnounceConfig reloaded = config(new long[0], new String("LINEAR"), new String("EXACT"));
+        assertNotSame(AnnounceConfig.DEFAULT, reloaded);
+        assertSame(AnnounceConfig.DEFAULT, reloaded.shared());
+
+        AnnounceConfig configured = config(new long[]{42L}, AnnounceConfig.ATTENUATION_LINEAR, AnnounceConfig.TRIGGER_MODE_EXACT);
+        assertSame(configured, configured.shared());
+    }
+
+    @Test
+    void sortedSelectionSharesWatchedArray() {
+        AnnounceConfig single = config(new long[]{9_000_000_000L}, AnnounceConfig.ATTENUATION_LINEAR, AnnounceConfig.TRIGGER_MODE_EXACT);
+        assertSame(single.getPlatformIds(), single.getWatchedPlatformIds());
+
+        AnnounceConfig sorted = config(new long[]{-7L, 42L, 9_000_000_000L}, AnnounceConfig.ATTENUATION_LINEAR, AnnounceConfig.TRIGGER_MODE_EXACT);
+        assertSame(sorted.getPlatformIds(), sorted.getWatchedPlatformIds());
+    }
+
+    @Test
+    void unsortedSelectionIsSortedAndDeduplicated() {
+        long[] selection = {42L, -7L, 42L, 9_000_000_000L};
+        AnnounceConfig config = config(selection, AnnounceConfig.ATTENUATION_LINEAR, AnnounceConfig.TRIGGER_MODE_EXACT);
+        assertArrayEquals(selection, config.getPlatformIds());
+        assertNotSame(selection, config.getPlatformIds());
+        assertArrayEquals(new long[]{-7L, 42L, 9_000_000_000L}, config.getWatchedPlatformIds());
+    }
+
+    @Test
+    void modeStringsAreCanonical() {
+        // NBT やパケットから来た文字列は別インスタンス
+        AnnounceConfig config = config(new long[]{42L}, new String("NONE"), new String("CROSSING"));
+        assertSame(AnnounceConfig.ATTENUATION_NONE, config.attenuationType);
+        assertSame(AnnounceConfig.TRIGGER_MODE_CROSSING, config.triggerMode);
+
+        AnnounceConfig missing = config(new long[]{42L}, null, null);
+        assertSame(AnnounceConfig.ATTENUATION_LINEAR, missing.attenuationType);
+        assertSame(AnnounceConfig.TRIGGER_MODE_EXACT, missing.triggerMode);
+    }
+
+    @Test
+    void entriesAreSharedButListIsNot() {
+        AnnouncementEntry entry = new AnnouncementEntry("arrival", 3);
+        List<AnnouncementEntry> entries = new ArrayList<>(List.of(entry));
+        AnnounceConfig config = config(new long[]{42L}, entries, AnnounceConfig.ATTENUATION_LINEAR, AnnounceConfig.TRIGGER_MODE_EXACT);
+        assertSame(entry, config.entries.get(0));
+
+        // 呼び出し側のリストを後から変えても設定には影響しない
+        entries.set(0, entry.withDelaySeconds(10));
+        assertEquals(3, config.entries.get(0).getDelaySeconds());
+        assertEquals(3, entry.getDelaySeconds());
+    }
+
+    @Test
+    void oversizedSelectionIsCut() {
+        long[] selection = new long[AnnounceConfig.MAX_PLATFORMS + 10];
+        for (int i = 0; i < selection.length; i++) {
+            selection[i] = i;
+        }
+        AnnounceConfig config = config(selection, AnnounceConfig.ATTENUATION_LINEAR, AnnounceConfig.TRIGGER_MODE_EXACT);
+        assertEquals(AnnounceConfig.MAX_PLATFORMS, config.getPlatformIds().length);
+        assertEquals(AnnounceConfig.MAX_PLATFORMS, config.getWatchedPlatformIds().length);
+    }
+}
@@ -0,0 +1,140 @@
+package com.botamochi.easyannouncement.schedule;
+
+import com.botamochi.easyannouncement.Allocations;
+import com.botamochi.easyannouncement.schedule.PlatformArrivalIndex.NextArrival;
+import com.botamochi.easyannouncement.schedule.PlatformArrivalIndex.PlatformArrivals;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlatformArrivalIndexTest {
+    private static final long[] PLATFORMS = {9_000_000_000L, 42L, -7L};
+    private static final int ARRIVALS = 200;
+    private static final long HEADWAY = 30_000L;
+
+    // 3 ホーム分の時刻表。5 本に 1 本は終点止まり (ホームごとにずらす)、7 本に 1 本は路線なし
+    private static PlatformArrivalIndex createIndex() {
+        PlatformArrivalIndex index = new PlatformArrivalIndex(null);
+        for (int p = 0; p < PLATFORMS.length; p++) {
+            long[] arrivals = new long[ARRIVALS];
+            long[] routeIds = new long[ARRIVALS];
+            int[] stationIndices = new int[ARRIVALS];
+            boolean[] hasRoute = new boolean[ARRIVALS];
+            boolean[] terminating = new boolean[ARRIVALS];
+            for (int i = 0; i < ARRIVALS; i++) {
+                arrivals[i] = i * HEADWAY + p * 7_000L;
+                routeIds[i] = p * 1000L + i;
+                stationIndices[i] = i % 4;
+                hasRoute[i] = i % 7 != 3;
+                terminating[i] = (i + p) % 5 == 0;
+            }
+            index.install(PLATFORMS[p], p, PlatformArrivals.of(arrivals, routeIds, stationIndices, hasRoute, terminating));
+        }
+        return index;
+    }
+
+    private static PlatformArrivals single(long arrival, long routeId, boolean hasRoute, boolean terminating) {
+        return PlatformArrivals.of(new long[]{arrival}, new long[]{routeId}, new int[]{0}, new boolean[]{hasRoute}, new boolean[]{terminating});
+    }
+
+    @Test
+    void selectsEarliestNonTerminatingArrival() {
+        PlatformArrivalIndex index = createIndex();
+        NextArrival out = new NextArrival();
+
+        // t=0: ホーム 0 の 0 番は終点止まり、ホーム 1 の 0 番 (7 s) は通常
+        assertTrue(index.selectNext(PLATFORMS, 0L, out));
+        assertEquals(42L, out.getPlatformId());
+        assertEquals(1000L, out.getRouteId());
+        assertEquals(7_000L, out.getArrivalMillis());
+
+        // 全部過ぎたら何も無い
+        assertFalse(index.selectNext(PLATFORMS, ARRIVALS * HEADWAY, out));
+        assertFalse(out.isPresent());
+    }
+
+    @Test
+    void tiesGoToLowestPlatformIdInGroup() {
+        PlatformArrivalIndex index = new PlatformArrivalIndex(null);
+        index.install(20L, 1L, single(5_000L, 200L, true, false));
+        index.install(10L, 1L, single(5_000L, 100L, true, false));
+        NextArrival out = new NextArrival();
+
+        // 素の selectNext は渡された順で先のホーム
+        assertTrue(index.selectNext(new long[]{20L, 10L}, 0L, out));
+        assertEquals(20L, out.getPlatformId());
+
+        // グループはキーがソート済みなので、選んだ順に関係なく ID の小さいホーム
+        NextArrival next = new PlatformGroup(PlatformGroup.Key.of(new long[]{20L, 10L})).getNext(index, 0L);
+        assertNotNull(next);
+        assertEquals(10L, next.getPlatformId());
+        assertEquals(100L, next.getRouteId());
+    }
+
+    @Test
+    void fallsBackToTerminatingTrainWithRoute() {
+        PlatformArrivalIndex index = new PlatformArrivalIndex(null);
+        // ホーム 1: 1 s に路線なし、2 s に終点止まり。ホーム 2: 1.5 s に終点止まり
+        index.install(1L, 1L, PlatformArrivals.of(new long[]{1_000L, 2_000L}, new long[]{11L, 12L}, new int[]{0, 3},
+                new boolean[]{false, true}, new boolean[]{false, true}));
+        index.install(2L, 1L, single(1_500L, 21L, true, true));
+        long[] platforms = {1L, 2L};
+        NextArrival out = new NextArrival();
+
+        assertTrue(index.selectNext(platforms, 0L, out));
+        assertEquals(2L, out.getPlatformId());
+        assertEquals(21L, out.getRouteId());
+        assertEquals(1_500L, out.getArrivalMillis());
+
+        assertTrue(index.selectNext(platforms, 1_600L, out));
+        assertEquals(1L, out.getPlatformId());
+        assertEquals(12L, out.getRouteId());
+        assertEquals(3, out.getCurrentStationIndex());
+
+        // 終点止まりでない列車があればそちらが優先
+        index.install(2L, 2L, single(1_900L, 22L, true, false));
+        assertTrue(index.selectNext(platforms, 1_600L, out));
+        assertEquals(22L, out.getRouteId());
+    }
+
+    @Test
+    void selectNextAndGetNextDoNotAllocate() {
+        Allocations.assumeSupported();
+        PlatformArrivalIndex index = createIndex();
+        PlatformGroup group = new PlatformGroup(PlatformGroup.Key.of(PLATFORMS));
+        NextArrival out = new NextArrival();
+        long[] checksum = new long[1];
+        Runnable run = () -> checksum[0] += run(index, group, out);
+
+        // JIT が落ち着くまで回してから測る
+        for (int round = 0; round < 20; round++) {
+            run.run();
+        }
+        for (int round = 0; round < 5; round++) {
+            assertEquals(0L, Allocations.allocatedBytes(run), "bytes allocated by selectNext/getNext");
+        }
+        assertTrue(checksum[0] != 0);
+    }
+
+    // 時刻を進めながら選び直す。グループは到着が過ぎるたびと、無効化のたびに再選択する
+    private static long run(PlatformArrivalIndex index, PlatformGroup group, NextArrival out) {
+        long checksum = 0;
+        for (long now = 0; now < ARRIVALS * HEADWAY; now += 1_000L) {
+            if (index.selectNext(PLATFORMS, now, out)) {
+                checksum += out.getRouteId();
+            }
+            if (now % 60_000L == 0) {
+                group.invalidate();
+            }
+            NextArrival next = group.getNext(index, now);
+            if (next != null) {
+                checksum += next.getArrivalMillis();
+            }
+        }
+        group.invalidate();
+        return checksum;
+    }
+}